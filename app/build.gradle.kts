@@ -8,6 +8,8 @@
 plugins {
     // Apply the application plugin to add support for building a CLI application in Java.
     application
+    // Microbenchmarks in src/jmh, run with `./gradlew jmh`
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 repositories {
@@ -42,6 +44,31 @@ tasks.named<Test>("test") {
     useJUnitPlatform()
 }
 
+jmh {
+    jvmArgsAppend = listOf("--enable-preview")
+}
+
 tasks.withType<JavaCompile> {
     options.compilerArgs.add("--enable-preview")
 }
+
+// Ahead-of-time compiler: `./gradlew jloxc --args="-o out.jar program.jlox"`
+tasks.register<JavaExec>("jloxc") {
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass = "com.interpreters.lox.Jloxc"
+    jvmArgs("--enable-preview")
+}
+
+// Lox benchmark corpus checked against benchmarks/baseline.json: `./gradlew loxBenchmarks [-Pengine=closure]`,
+// with `-PupdateBaseline` to record new results instead. The fixed heap and collector keep live heap comparable.
+tasks.register<JavaExec>("loxBenchmarks") {
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass = "com.interpreters.lox.BenchmarkSuite"
+    jvmArgs("--enable-preview", "-Xms512m", "-Xmx512m", "-XX:+UseSerialGC")
+    workingDir = rootDir
+    args("--engine", project.findProperty("engine") ?: "tree-walking")
+    if (project.hasProperty("updateBaseline")) {
+        args("--update")
+    }
+    args("benchmarks", "benchmarks/baseline.json")
+}
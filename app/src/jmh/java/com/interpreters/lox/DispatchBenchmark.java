@@ -0,0 +1,72 @@
+package com.interpreters.lox;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares accept/visitor double dispatch with the generated switch over the sealed node types, for the
+ * interpreter and the resolver. Run with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "--enable-preview")
+public class DispatchBenchmark {
+    private static final String WORKLOAD = """
+            fun fib(n) { if (n < 2) return n; return fib(n - 1) + fib(n - 2); }
+            class Point {
+                init(x, y) { this.x = x; this.y = y; }
+                add(other) { return Point(this.x + other.x, this.y + other.y); }
+            }
+            var sum = Point(0, 0);
+            for (var i = 0; i < 2000; i = i + 1) {
+                sum = sum.add(Point(i, -i));
+            }
+            var total = 0;
+            var i = 0;
+            while (i < 20000) {
+                total = total + (i > 100 ? i * 2 : -i) / 3;
+                i = i + 1;
+            }
+            var result = fib(15) + sum.x + total;
+            """;
+
+    @Param({"visitor", "switch"})
+    public String dispatch;
+
+    private final PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+    private Program program;
+    private List<Stmt> statements;
+    private Engine engine;
+    private boolean switchDispatch;
+
+    @Setup
+    public void setup() {
+        var reporter = new ErrorReporter(discard, discard);
+        program = LoxRuntime.compile(WORKLOAD, reporter);
+        statements = new Parser(new Scanner(WORKLOAD, reporter).scan(), reporter).parse();
+        switchDispatch = dispatch.equals("switch");
+        engine = switchDispatch ? Engine.SWITCH : Engine.TREE_WALKING;
+    }
+
+    @Benchmark
+    public LoxRuntime interpret() {
+        var runtime = new LoxRuntime(discard, discard, engine);
+        runtime.run(program);
+        return runtime;
+    }
+
+    @Benchmark
+    public Map<Expr, Integer> resolve() {
+        var resolver = new Resolver(new ErrorReporter(discard, discard), switchDispatch);
+        resolver.resolve(statements);
+        return resolver.getLocals();
+    }
+}
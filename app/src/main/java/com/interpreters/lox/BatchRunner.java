@@ -0,0 +1,167 @@
+package com.interpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Runs many scripts in one JVM on a bounded thread pool. Every script gets its own {@link LoxRuntime}
+ * with captured output; scripts with identical source share one compiled {@link Program}.
+ */
+public class BatchRunner {
+
+    public record Result(Path script, int status, double millis, String output) {}
+
+    private record Compiled(Program program, String diagnostics) {}
+
+    private final int jobs;
+    private final ExecutionLimits limits;
+    private final Map<String, Compiled> compiled = new ConcurrentHashMap<>();
+
+    public BatchRunner(int jobs) {
+        this(jobs, ExecutionLimits.NONE);
+    }
+
+    public BatchRunner(int jobs, ExecutionLimits limits) {
+        this.jobs = jobs;
+        this.limits = limits;
+    }
+
+    /**
+     * Entry point for {@code jlox --batch [--jobs n] [--max-steps n] [--timeout ms] <file|dir|@list>...}. Returns the process exit status.
+     */
+    public static int run(String[] args) throws IOException {
+        int jobs = Runtime.getRuntime().availableProcessors();
+        long maxSteps = 0;
+        Duration timeout = null;
+        var paths = new ArrayList<String>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--jobs") && i + 1 < args.length) {
+                jobs = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--max-steps") && i + 1 < args.length) {
+                maxSteps = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--timeout") && i + 1 < args.length) {
+                timeout = Duration.ofMillis(Long.parseLong(args[++i]));
+            } else {
+                paths.add(args[i]);
+            }
+        }
+
+        var scripts = collectScripts(paths);
+        if (scripts.isEmpty() || jobs < 1) {
+            System.out.println("Usage: jlox --batch [--jobs n] [--max-steps n] [--timeout ms] <file|dir|@list>...");
+            return 65;
+        }
+
+        var results = new BatchRunner(jobs, new ExecutionLimits(maxSteps, timeout)).run(scripts);
+        report(results, System.out);
+
+        return results.stream().mapToInt(Result::status).max().orElse(0);
+    }
+
+    public List<Result> run(List<Path> scripts) {
+        try (var pool = Executors.newFixedThreadPool(jobs)) {
+            var futures = new ArrayList<Future<Result>>();
+            for (var script : scripts) {
+                futures.add(pool.submit(() -> runScript(script)));
+            }
+
+            var results = new ArrayList<Result>();
+            for (var future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Batch run failed", e);
+        }
+    }
+
+    private Result runScript(Path script) {
+        var buffer = new ByteArrayOutputStream();
+        var captured = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+        var start = System.nanoTime();
+        int status;
+
+        try {
+            var source = Files.readString(script);
+            var compiled = this.compiled.computeIfAbsent(source, BatchRunner::compile);
+
+            if (compiled.program() == null) {
+                captured.print(compiled.diagnostics());
+                status = 64;
+            } else {
+                var runtime = new LoxRuntime(captured, captured);
+                runtime.run(compiled.program(), limits);
+                runtime.flush();
+                status = runtime.hadRuntimeError() ? 70 : 0;
+            }
+        } catch (IOException e) {
+            captured.println("Can't read script: " + e.getMessage());
+            status = 66;
+        } catch (RuntimeException | StackOverflowError e) {
+            captured.println("Internal error: " + e);
+            status = 70;
+        }
+
+        var millis = (System.nanoTime() - start) / 1e6;
+        return new Result(script, status, millis, buffer.toString(StandardCharsets.UTF_8));
+    }
+
+    private static Compiled compile(String source) {
+        var buffer = new ByteArrayOutputStream();
+        var captured = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+        var program = LoxRuntime.compile(source, new ErrorReporter(captured, captured));
+
+        return new Compiled(program, buffer.toString(StandardCharsets.UTF_8));
+    }
+
+    private static List<Path> collectScripts(List<String> args) throws IOException {
+        var scripts = new ArrayList<Path>();
+        for (var arg : args) {
+            if (arg.startsWith("@")) {
+                try (var lines = Files.lines(Paths.get(arg.substring(1)))) {
+                    lines.map(String::trim).filter(l -> !l.isEmpty()).map(Paths::get).forEach(scripts::add);
+                }
+                continue;
+            }
+
+            var path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    files.filter(f -> f.toString().endsWith(".jlox")).sorted().forEach(scripts::add);
+                }
+            } else {
+                scripts.add(path);
+            }
+        }
+        return scripts;
+    }
+
+    private static void report(List<Result> results, PrintStream out) {
+        double total = 0;
+        int failed = 0;
+
+        for (var result : results) {
+            out.printf("== %s: exit %d, %.3f ms%n", result.script(), result.status(), result.millis());
+            out.print(result.output());
+            total += result.millis();
+            if (result.status() != 0) failed++;
+        }
+
+        out.printf("== %d scripts, %d failed, %.3f ms total script time%n", results.size(), failed, total);
+    }
+}
@@ -0,0 +1,63 @@
+package com.interpreters.lox;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Implements {@code bench(fn, iterations)}: calls {@code fn} {@code iterations} times to warm up, then times
+ * {@link #RUNS} further rounds of {@code iterations} calls. Each round is timed as a whole, so the cost of reading
+ * the clock is spread over the round rather than added to every call. The result is a map of per-call statistics
+ * in nanoseconds, taken across the rounds.
+ */
+final class Benchmark {
+    static final int RUNS = 10;
+    static final int MAX_ITERATIONS = 1_000_000;
+
+    private Benchmark() {
+    }
+
+    static LoxMap run(Interpreter interpreter, LoxCallable fn, int iterations) {
+        if (fn.arity() != 0) {
+            throw new RuntimeError("Can only benchmark functions without parameters");
+        }
+        if (iterations < 1 || iterations > MAX_ITERATIONS) {
+            throw new RuntimeError("Iterations should be between 1 and %d".formatted(MAX_ITERATIONS));
+        }
+
+        for (int i = 0; i < iterations; i++) {
+            fn.call(interpreter, List.of());
+        }
+
+        // per-call time of each round
+        var samples = new double[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                fn.call(interpreter, List.of());
+            }
+            samples[run] = (double) (System.nanoTime() - start) / iterations;
+        }
+
+        Arrays.sort(samples);
+        double total = 0;
+        for (var sample : samples) {
+            total += sample;
+        }
+
+        var result = new LoxMap();
+        result.put("iterations", (double) iterations);
+        result.put("runs", (double) RUNS);
+        result.put("mean", total / RUNS);
+        result.put("min", samples[0]);
+        result.put("p50", percentile(samples, 50));
+        result.put("p90", percentile(samples, 90));
+        result.put("max", samples[RUNS - 1]);
+        return result;
+    }
+
+    // nearest-rank percentile of sorted samples
+    private static double percentile(double[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+}
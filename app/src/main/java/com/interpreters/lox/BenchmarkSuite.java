@@ -0,0 +1,424 @@
+package com.interpreters.lox;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs the Lox programs of a benchmark corpus ({@code benchmarks/}) in this JVM and compares them with a baseline
+ * file. Every program is compiled once, run a few times to warm up and then measured over several runs, each with a
+ * fresh {@link LoxRuntime} and its output discarded. For every program it records the median wall time, bytes
+ * allocated and peak live heap of a run. Run with {@code ./gradlew loxBenchmarks}.
+ * <p>
+ * The baseline holds, per engine, the results of every program, and the tolerance for each measure: a result more
+ * than that fraction above its baseline is a regression.
+ * <ul>
+ *     <li>Allocated bytes are summed over the JVM's live threads, so work on the fork-join pool counts. Threads
+ *     that end during a run, such as those of {@code spawn}, take what they allocated with them.</li>
+ *     <li>Live heap is the heap's usage right after a collection, the largest of the run's collections and of one
+ *     forced at its end. It leaves out the garbage waiting in eden, but still counts garbage promoted to the old
+ *     generation before a full collection, so it depends on the collector and heap size the JVM runs with.</li>
+ * </ul>
+ */
+public final class BenchmarkSuite {
+    private static final Map<String, Engine> ENGINES = Map.of(
+            "tree-walking", Engine.TREE_WALKING,
+            "switch", Engine.SWITCH,
+            "flat", Engine.FLAT,
+            "closure", Engine.CLOSURE,
+            "stackless", Engine.STACKLESS);
+    private static final List<String> MEASURES = List.of("millis", "allocatedBytes", "liveHeapBytes");
+    private static final Map<String, Double> DEFAULT_TOLERANCE = Map.of(
+            "millis", 0.25, "allocatedBytes", 0.10, "liveHeapBytes", 0.10);
+
+    record Result(String name, double millis, long allocatedBytes, long liveHeapBytes) {
+        double measure(String measure) {
+            return switch (measure) {
+                case "millis" -> millis;
+                case "allocatedBytes" -> allocatedBytes;
+                case "liveHeapBytes" -> liveHeapBytes;
+                default -> throw new IllegalArgumentException(measure);
+            };
+        }
+    }
+
+    private final Engine engine;
+    private final int warmup;
+    private final int runs;
+    private final PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final Set<String> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .map(MemoryPoolMXBean::getName)
+            .collect(Collectors.toSet());
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    // the largest heap usage after a collection since the last reset, and the collections reported so far
+    private final AtomicLong liveHeap = new AtomicLong();
+    private final AtomicLong collectionsSeen = new AtomicLong();
+
+    public BenchmarkSuite(Engine engine, int warmup, int runs) {
+        this.engine = engine;
+        this.warmup = warmup;
+        this.runs = runs;
+        collectionsSeen.set(collections());
+        for (var collector : collectors) {
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                    return;
+                }
+                var info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                long used = info.getGcInfo().getMemoryUsageAfterGc().entrySet().stream()
+                        .filter(pool -> heapPools.contains(pool.getKey()))
+                        .mapToLong(pool -> pool.getValue().getUsed())
+                        .sum();
+                liveHeap.accumulateAndGet(used, Math::max);
+                collectionsSeen.incrementAndGet();
+            }, null, null);
+        }
+    }
+
+    /**
+     * {@code BenchmarkSuite [--engine name] [--warmup n] [--runs n] [--update] corpus baseline.json}: exits with 1
+     * if a program regressed, and with 64 or 70 if one doesn't compile or fails. {@code --update} writes the results
+     * to the baseline instead of checking them.
+     */
+    public static void main(String[] args) throws IOException {
+        var engineName = "tree-walking";
+        int warmup = 3;
+        int runs = 5;
+        boolean update = false;
+        var paths = new ArrayList<String>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--engine") && i + 1 < args.length) {
+                engineName = args[++i];
+            } else if (args[i].equals("--warmup") && i + 1 < args.length) {
+                warmup = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--runs") && i + 1 < args.length) {
+                runs = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--update")) {
+                update = true;
+            } else {
+                paths.add(args[i]);
+            }
+        }
+
+        if (paths.size() != 2 || !ENGINES.containsKey(engineName) || warmup < 0 || runs < 1) {
+            System.out.println("Usage: BenchmarkSuite [--engine " + String.join(" | ", new TreeMap<>(ENGINES).keySet())
+                    + "] [--warmup n] [--runs n] [--update] corpus baseline.json");
+            System.exit(65);
+        }
+
+        var corpus = Path.of(paths.get(0));
+        var baselineFile = Path.of(paths.get(1));
+        var suite = new BenchmarkSuite(ENGINES.get(engineName), warmup, runs);
+
+        var results = new ArrayList<Result>();
+        for (var program : programs(corpus)) {
+            var result = suite.measure(program);
+            System.out.printf(Locale.ROOT, "%-16s %10.1f ms %10.1f MB allocated %8.1f MB live heap%n",
+                    result.name(), result.millis(), megabytes(result.allocatedBytes()),
+                    megabytes(result.liveHeapBytes()));
+            results.add(result);
+        }
+
+        var baseline = Files.exists(baselineFile)
+                ? Baseline.parse(Files.readString(baselineFile, StandardCharsets.UTF_8))
+                : new Baseline(new LinkedHashMap<>(DEFAULT_TOLERANCE), new TreeMap<>());
+        if (update) {
+            baseline.update(engineName, results);
+            Files.writeString(baselineFile, baseline.toJson(), StandardCharsets.UTF_8);
+            System.out.println("Wrote the " + engineName + " baseline to " + baselineFile);
+            return;
+        }
+
+        int regressions = baseline.compare(engineName, results, System.out);
+        if (regressions > 0) {
+            System.out.println(regressions + " regression(s) against " + baselineFile);
+            System.exit(1);
+        }
+    }
+
+    private static List<Path> programs(Path corpus) throws IOException {
+        try (Stream<Path> files = Files.list(corpus)) {
+            return files.filter(f -> f.toString().endsWith(".jlox")).sorted().toList();
+        }
+    }
+
+    Result measure(Path file) throws IOException {
+        var name = file.getFileName().toString().replaceFirst("\\.jlox$", "");
+        var program = LoxRuntime.compile(Files.readString(file, StandardCharsets.UTF_8),
+                new ErrorReporter(System.out, System.err));
+        if (program == null) {
+            System.err.println(name + " doesn't compile");
+            System.exit(64);
+        }
+
+        for (int i = 0; i < warmup; i++) {
+            run(name, program);
+        }
+
+        var millis = new double[runs];
+        var allocated = new long[runs];
+        var live = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            System.gc();
+            awaitCollections();
+            liveHeap.set(0);
+            var allocatedBefore = allocatedByThread();
+            long start = System.nanoTime();
+
+            var runtime = run(name, program);
+
+            millis[i] = (System.nanoTime() - start) / 1e6;
+            allocated[i] = allocatedSince(allocatedBefore);
+            // what the program still holds at its end, such as its globals
+            System.gc();
+            Reference.reachabilityFence(runtime);
+            awaitCollections();
+            live[i] = liveHeap.get();
+        }
+
+        Arrays.sort(millis);
+        Arrays.sort(allocated);
+        Arrays.sort(live);
+        return new Result(name, millis[runs / 2], allocated[runs / 2], live[runs / 2]);
+    }
+
+    private LoxRuntime run(String name, Program program) {
+        var runtime = new LoxRuntime(discard, discard, engine);
+        runtime.run(program);
+        runtime.flush();
+        if (runtime.hadRuntimeError()) {
+            System.err.println(name + " failed with a runtime error");
+            System.exit(70);
+        }
+        return runtime;
+    }
+
+    private long collections() {
+        return collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    // collections are reported on a thread of their own, a little after they end
+    private void awaitCollections() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (collectionsSeen.get() < collections() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private Map<Long, Long> allocatedByThread() {
+        var ids = threads.getAllThreadIds();
+        var bytes = threads.getThreadAllocatedBytes(ids);
+        var allocated = new HashMap<Long, Long>();
+        for (int i = 0; i < ids.length; i++) {
+            // -1 for threads that ended in between
+            if (bytes[i] >= 0) allocated.put(ids[i], bytes[i]);
+        }
+        return allocated;
+    }
+
+    private long allocatedSince(Map<Long, Long> before) {
+        long total = 0;
+        for (var thread : allocatedByThread().entrySet()) {
+            total += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+        }
+        return total;
+    }
+
+    private static double megabytes(double bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    /**
+     * The baseline file: tolerances by measure, and results by engine and then program. Only holds the JSON this
+     * class writes, so the reader only handles objects, strings and numbers.
+     */
+    record Baseline(Map<String, Double> tolerance, Map<String, Map<String, Result>> engines) {
+
+        void update(String engine, List<Result> results) {
+            var programs = new TreeMap<String, Result>();
+            for (var result : results) {
+                programs.put(result.name(), result);
+            }
+            engines.put(engine, programs);
+        }
+
+        // prints every program against its baseline and returns the number of regressions
+        int compare(String engine, List<Result> results, PrintStream out) {
+            var programs = engines.getOrDefault(engine, Map.of());
+            int regressions = 0;
+            for (var result : results) {
+                var base = programs.get(result.name());
+                if (base == null) {
+                    out.printf("%-16s no %s baseline%n", result.name(), engine);
+                    continue;
+                }
+                for (var measure : MEASURES) {
+                    double change = result.measure(measure) / base.measure(measure) - 1;
+                    double allowed = tolerance.getOrDefault(measure, DEFAULT_TOLERANCE.get(measure));
+                    boolean regressed = change > allowed;
+                    if (regressed) regressions++;
+                    out.printf(Locale.ROOT, "%-16s %-14s %+7.1f%% (tolerance %.0f%%)%s%n", result.name(), measure,
+                            change * 100, allowed * 100, regressed ? "  REGRESSION" : "");
+                }
+            }
+            return regressions;
+        }
+
+        String toJson() {
+            var json = new StringBuilder("{\n  \"tolerance\": {");
+            var separator = "\n";
+            for (var measure : MEASURES) {
+                json.append(separator).append("    \"%s\": %s".formatted(measure, tolerance.get(measure)));
+                separator = ",\n";
+            }
+            json.append("\n  },\n  \"engines\": {");
+            var engineSeparator = "\n";
+            for (var engine : engines.entrySet()) {
+                json.append(engineSeparator).append("    \"").append(engine.getKey()).append("\": {");
+                var programSeparator = "\n";
+                for (var result : engine.getValue().values()) {
+                    json.append(programSeparator).append(String.format(Locale.ROOT,
+                            "      \"%s\": {\"millis\": %.1f, \"allocatedBytes\": %d, \"liveHeapBytes\": %d}",
+                            result.name(), result.millis(), result.allocatedBytes(), result.liveHeapBytes()));
+                    programSeparator = ",\n";
+                }
+                json.append("\n    }");
+                engineSeparator = ",\n";
+            }
+            return json.append("\n  }\n}\n").toString();
+        }
+
+        @SuppressWarnings("unchecked")
+        static Baseline parse(String json) {
+            var root = (Map<String, Object>) new JsonReader(json).value();
+
+            var tolerance = new LinkedHashMap<String, Double>(DEFAULT_TOLERANCE);
+            var tolerances = (Map<String, Object>) root.getOrDefault("tolerance", Map.of());
+            tolerances.forEach((measure, value) -> tolerance.put(measure, (Double) value));
+
+            var engines = new TreeMap<String, Map<String, Result>>();
+            var engineMap = (Map<String, Object>) root.getOrDefault("engines", Map.of());
+            engineMap.forEach((engine, programs) -> {
+                var results = new TreeMap<String, Result>();
+                ((Map<String, Object>) programs).forEach((name, value) -> {
+                    var measures = (Map<String, Object>) value;
+                    results.put(name, new Result(name, (Double) measures.get("millis"),
+                            ((Double) measures.get("allocatedBytes")).longValue(),
+                            ((Double) measures.get("liveHeapBytes")).longValue()));
+                });
+                engines.put(engine, results);
+            });
+            return new Baseline(tolerance, engines);
+        }
+    }
+
+    private static final class JsonReader {
+        private final String json;
+        private int pos;
+
+        JsonReader(String json) {
+            this.json = json;
+        }
+
+        Object value() {
+            skipWhitespace();
+            if (pos >= json.length()) throw error("Unexpected end of baseline");
+            char c = json.charAt(pos);
+            if (c == '{') return object();
+            if (c == '"') return string();
+            return number();
+        }
+
+        private Map<String, Object> object() {
+            var object = new LinkedHashMap<String, Object>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                var key = string();
+                skipWhitespace();
+                expect(':');
+                object.put(key, value());
+                skipWhitespace();
+                if (peek() == '}') {
+                    pos++;
+                    return object;
+                }
+                expect(',');
+            }
+        }
+
+        private String string() {
+            expect('"');
+            int end = json.indexOf('"', pos);
+            if (end < 0) throw error("Unterminated string in baseline");
+            var string = json.substring(pos, end);
+            pos = end + 1;
+            return string;
+        }
+
+        private Double number() {
+            int start = pos;
+            while (pos < json.length() && "+-.eE0123456789".indexOf(json.charAt(pos)) >= 0) {
+                pos++;
+            }
+            try {
+                return Double.parseDouble(json.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("Expected a number in baseline");
+            }
+        }
+
+        private void expect(char c) {
+            if (peek() != c) throw error("Expected '" + c + "' in baseline");
+            pos++;
+        }
+
+        private char peek() {
+            return pos < json.length() ? json.charAt(pos) : '\0';
+        }
+
+        private void skipWhitespace() {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at offset " + pos);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.interpreters.lox;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A native function bound to a static method annotated with {@link LoxNative}. Arguments are checked against the
+ * method's parameter types and then passed through a method handle that unboxes them, so the method runs with its
+ * own primitive signature. The interpreter calls {@link #invoke} with an argument array directly; {@link #call}
+ * is there for callers that go through {@link LoxCallable}.
+ */
+final class BoundNative implements LoxCallable {
+    private static final Set<Class<?>> PARAMETER_TYPES = Set.of(double.class, boolean.class, String.class, Object.class);
+    private static final Set<Class<?>> RETURN_TYPES =
+            Set.of(void.class, double.class, boolean.class, String.class, Object.class);
+
+    private final String name;
+    private final Class<?>[] parameters;
+    // (Object[])Object
+    private final MethodHandle invoker;
+
+    private BoundNative(String name, Class<?>[] parameters, MethodHandle invoker) {
+        this.name = name;
+        this.parameters = parameters;
+        this.invoker = invoker;
+    }
+
+    /**
+     * Binds the annotated methods of {@code module}. Throws {@link IllegalStateException} for methods that can't
+     * be bound.
+     */
+    static List<BoundNative> bind(Class<?> module) {
+        var natives = new ArrayList<BoundNative>();
+        for (var method : module.getDeclaredMethods()) {
+            var annotation = method.getAnnotation(LoxNative.class);
+            if (annotation != null) {
+                natives.add(bind(annotation.value(), method));
+            }
+        }
+        return natives;
+    }
+
+    private static BoundNative bind(String name, Method method) {
+        int modifiers = method.getModifiers();
+        if (!Modifier.isStatic(modifiers) || !Modifier.isPublic(modifiers)) {
+            throw new IllegalStateException("Native '%s' should be a public static method: %s".formatted(name, method));
+        }
+        var parameters = method.getParameterTypes();
+        for (var type : parameters) {
+            if (!PARAMETER_TYPES.contains(type)) {
+                throw new IllegalStateException("Native '%s' has a parameter of unsupported type %s".formatted(name, type));
+            }
+        }
+        if (!RETURN_TYPES.contains(method.getReturnType())) {
+            throw new IllegalStateException(
+                    "Native '%s' has unsupported return type %s".formatted(name, method.getReturnType()));
+        }
+
+        try {
+            var handle = MethodHandles.publicLookup().unreflect(method);
+            var invoker = handle.asType(MethodType.genericMethodType(parameters.length))
+                    .asSpreader(Object[].class, parameters.length);
+            return new BoundNative(name, parameters, invoker);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Can't access native '%s': %s".formatted(name, e.getMessage()), e);
+        }
+    }
+
+    String name() {
+        return name;
+    }
+
+    @Override
+    public int arity() {
+        return parameters.length;
+    }
+
+    /**
+     * Calls the method with {@code args}, which must have {@link #arity()} elements.
+     */
+    Object invoke(Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            check(i, args[i]);
+        }
+
+        try {
+            return (Object) invoker.invokeExact(args);
+        } catch (RuntimeError | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeError("%s() failed: %s".formatted(name, e.getMessage()));
+        }
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> args) {
+        return invoke(args.toArray());
+    }
+
+    private void check(int index, Object arg) {
+        var type = parameters[index];
+        if (type == double.class && !(arg instanceof Double)) {
+            throw argumentError(index, "a number");
+        }
+        if (type == boolean.class && !(arg instanceof Boolean)) {
+            throw argumentError(index, "a boolean");
+        }
+        if (type == String.class && !(arg instanceof String)) {
+            throw argumentError(index, "a string");
+        }
+    }
+
+    private RuntimeError argumentError(int index, String expected) {
+        return new RuntimeError("Argument %d of %s() should be %s".formatted(index + 1, name, expected));
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn %s()>".formatted(name);
+    }
+}
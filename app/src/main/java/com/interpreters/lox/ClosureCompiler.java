@@ -0,0 +1,460 @@
+package com.interpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import static com.interpreters.lox.Interpreter.isTruthy;
+
+/**
+ * Compiles resolved statements for {@link ClosureInterpreter} into trees of lambdas, each specialised for its
+ * node: the operator of a binary expression picks the lambda, a resolved local becomes a read at its depth and
+ * a global use site holds on to its cell. Running compiled code makes no visitor calls and looks nothing up in
+ * the resolution map; errors and the less common operations go through the tree-walking helpers with the
+ * original node.
+ * <p>
+ * Function bodies are compiled along with the statement declaring them and looked up by identity when called;
+ * interpreters keep the bodies they've run in a cache of their own, so calls don't take the compiler's lock. Both
+ * hold bodies weakly, so functions redefined in a long REPL or watch session don't pile up.
+ * Other statements and expressions are compiled each time they are handed in, which happens once per top-level
+ * statement.
+ */
+final class ClosureCompiler {
+    @FunctionalInterface
+    interface Code {
+        Object run(Interpreter interpreter);
+    }
+
+    /**
+     * A compiled statement. Instead of throwing {@link Break} or {@link Return}, it returns the exception for the
+     * enclosing loop or body to handle, and null when it completes normally.
+     */
+    @FunctionalInterface
+    interface Action {
+        RuntimeException run(Interpreter interpreter);
+    }
+
+    private static final Break BREAK = new Break();
+
+    // scope depth of a resolved local, or null for globals
+    private final Function<Expr, Integer> depths;
+    private final Function<String, GlobalCell> cells;
+
+    // compiled function bodies, guarded by this; dropped along with the tree of a function nothing refers to anymore
+    private final WeakIdentityCache<List<Stmt>, Action> bodies = new WeakIdentityCache<>();
+
+    ClosureCompiler(Function<Expr, Integer> depths, Function<String, GlobalCell> cells) {
+        this.depths = depths;
+        this.cells = cells;
+    }
+
+    synchronized Code compile(Expr expr) {
+        return expression(expr);
+    }
+
+    synchronized Action compile(Stmt stmt) {
+        return statement(stmt);
+    }
+
+    /**
+     * The compiled body of a function, run in the environment of the call.
+     */
+    synchronized Action body(List<Stmt> statements) {
+        var body = bodies.get(statements);
+        if (body == null) {
+            body = sequence(statements);
+            bodies.put(statements, body);
+        }
+        return body;
+    }
+
+    synchronized int cachedBodies() {
+        return bodies.size();
+    }
+
+    private Action statement(Stmt stmt) {
+        return switch (stmt) {
+            case Stmt.Expression s -> {
+                var expr = expression(s.expr());
+                yield in -> {
+                    expr.run(in);
+                    return null;
+                };
+            }
+            case Stmt.Print s -> {
+                var expr = expression(s.expr());
+                yield in -> {
+                    in.print(expr.run(in));
+                    return null;
+                };
+            }
+            case Stmt.VarDeclaration s -> {
+                var name = s.name().lexeme;
+                if (s.initializer() == null) {
+                    yield in -> {
+                        in.env.define(name, null);
+                        return null;
+                    };
+                }
+                var initializer = expression(s.initializer());
+                yield in -> {
+                    in.env.define(name, initializer.run(in));
+                    return null;
+                };
+            }
+            case Stmt.Block s -> {
+                var body = sequence(s.statements());
+                yield in -> {
+                    var original = in.env;
+                    try {
+                        in.env = new Environment(original);
+                        return body.run(in);
+                    } finally {
+                        in.env = original;
+                    }
+                };
+            }
+            case Stmt.If s -> {
+                var condition = expression(s.condition());
+                var thenClause = statement(s.thenClause());
+                if (s.elseClause() == null) {
+                    yield in -> isTruthy(condition.run(in)) ? thenClause.run(in) : null;
+                }
+                var elseClause = statement(s.elseClause());
+                yield in -> isTruthy(condition.run(in)) ? thenClause.run(in) : elseClause.run(in);
+            }
+            case Stmt.While s -> {
+                var keyword = s.keyword();
+                var condition = expression(s.condition());
+                var body = statement(s.body());
+                yield in -> {
+                    while (isTruthy(condition.run(in))) {
+                        var signal = body.run(in);
+                        if (signal == BREAK) break;
+                        if (signal != null) return signal;
+                        in.safepoint(keyword);
+                    }
+                    return null;
+                };
+            }
+            case Stmt.Function s -> {
+                function(s.function());
+                yield in -> {
+                    in.visit(s);
+                    return null;
+                };
+            }
+            case Stmt.Class s -> {
+                for (var method : s.methods()) {
+                    function(method.function());
+                }
+                yield in -> {
+                    in.visit(s);
+                    return null;
+                };
+            }
+            case Stmt.Break s -> in -> BREAK;
+            case Stmt.Return s -> {
+                if (s.value() == null) {
+                    yield in -> new Return(null);
+                }
+                var value = expression(s.value());
+                yield in -> new Return(value.run(in));
+            }
+        };
+    }
+
+    private Action sequence(List<Stmt> statements) {
+        var actions = new Action[statements.size()];
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = statement(statements.get(i));
+        }
+
+        if (actions.length == 1) return actions[0];
+        return in -> {
+            for (var action : actions) {
+                var signal = action.run(in);
+                if (signal != null) return signal;
+            }
+            return null;
+        };
+    }
+
+    // bodies are entered from LoxFunction.call, so they are compiled ahead of it
+    private void function(Expr.Function function) {
+        if (bodies.get(function.body()) == null) {
+            bodies.put(function.body(), sequence(function.body()));
+        }
+    }
+
+    private Code expression(Expr expr) {
+        return switch (expr) {
+            case Expr.Literal e -> {
+                var value = e.value();
+                yield in -> value;
+            }
+            case Expr.Grouping e -> expression(e.expression());
+            case Expr.Variable e -> variable(e, e.name());
+            case Expr.This e -> variable(e, e.keyword());
+            case Expr.Assign e -> assign(e, expression(e.value()));
+            case Expr.Binary e -> binary(e);
+            case Expr.Unary e -> unary(e);
+            case Expr.Logical e -> {
+                var left = expression(e.left());
+                var right = expression(e.right());
+                if (e.operator().type == TokenType.OR) {
+                    yield in -> {
+                        var value = left.run(in);
+                        return isTruthy(value) ? value : right.run(in);
+                    };
+                }
+                yield in -> {
+                    var value = left.run(in);
+                    return isTruthy(value) ? right.run(in) : value;
+                };
+            }
+            case Expr.Ternary e -> {
+                var condition = expression(e.condition());
+                var first = expression(e.first());
+                var second = expression(e.second());
+                yield in -> isTruthy(condition.run(in)) ? first.run(in) : second.run(in);
+            }
+            case Expr.Call e -> call(e);
+            case Expr.Function e -> {
+                function(e);
+                yield in -> new LoxFunction(null, e, in.env, false);
+            }
+            case Expr.Get e -> {
+                var target = expression(e.target());
+                yield in -> in.getProperty(e, target.run(in));
+            }
+            case Expr.Set e -> {
+                var target = expression(e.target());
+                var value = expression(e.value());
+                yield in -> {
+                    var instance = in.instance(e, target.run(in));
+                    instance.set(e.name(), value.run(in));
+                    return null;
+                };
+            }
+            case Expr.Index e -> {
+                var bracket = e.bracket();
+                var target = expression(e.target());
+                var index = expression(e.index());
+                yield in -> {
+                    var object = target.run(in);
+                    var key = index.run(in);
+                    return in.indexable(bracket, object).getIndex(bracket, key);
+                };
+            }
+            case Expr.SetIndex e -> {
+                var bracket = e.bracket();
+                var target = expression(e.target());
+                var index = expression(e.index());
+                var value = expression(e.value());
+                yield in -> {
+                    var indexable = in.indexable(bracket, target.run(in));
+                    var key = index.run(in);
+                    var result = value.run(in);
+                    indexable.setIndex(bracket, key, result);
+                    return result;
+                };
+            }
+            case Expr.Super e -> in -> in.visit(e);
+            case Expr.Increment e -> increment(e);
+            case Expr.CompareConstant e -> compareConstant(e);
+            // the lambdas for the assignment and the operation are already specialised
+            case Expr.CompoundAssign e -> expression(e.original());
+        };
+    }
+
+    private Code variable(Expr expr, Token name) {
+        var depth = depths.apply(expr);
+        if (depth == null) {
+            var cell = cells.apply(name.lexeme);
+            return in -> cell.get(name);
+        }
+        return switch (depth) {
+            case 0 -> in -> in.env.getValue(name);
+            case 1 -> in -> in.env.getParent().getValue(name);
+            default -> in -> in.env.ancestor(depth).getValue(name);
+        };
+    }
+
+    private Code assign(Expr.Assign expr, Code value) {
+        var name = expr.name();
+        var depth = depths.apply(expr);
+        if (depth == null) {
+            var cell = cells.apply(name.lexeme);
+            return in -> {
+                var result = value.run(in);
+                cell.set(name, result);
+                return result;
+            };
+        }
+        if (depth == 0) {
+            return in -> {
+                var result = value.run(in);
+                in.env.assign(name, result);
+                return result;
+            };
+        }
+        return in -> {
+            var result = value.run(in);
+            in.env.ancestor(depth).assign(name, result);
+            return result;
+        };
+    }
+
+    private Code binary(Expr.Binary expr) {
+        var left = expression(expr.left());
+        var right = expression(expr.right());
+        return switch (expr.operator().type) {
+            case PLUS -> in -> {
+                var l = left.run(in);
+                var r = right.run(in);
+                if (l instanceof Double a && r instanceof Double b) return a + b;
+                return in.binary(expr, l, r);
+            };
+            case MINUS -> in -> {
+                var l = left.run(in);
+                var r = right.run(in);
+                if (l instanceof Double a && r instanceof Double b) return a - b;
+                return in.binary(expr, l, r);
+            };
+            case STAR -> in -> {
+                var l = left.run(in);
+                var r = right.run(in);
+                if (l instanceof Double a && r instanceof Double b) return a * b;
+                return in.binary(expr, l, r);
+            };
+            case SLASH -> in -> {
+                var l = left.run(in);
+                var r = right.run(in);
+                if (l instanceof Double a && r instanceof Double b) return a / b;
+                return in.binary(expr, l, r);
+            };
+            case GREATER -> in -> {
+                var l = left.run(in);
+                var r = right.run(in);
+                if (l instanceof Double a && r instanceof Double b) return a > b;
+                return in.binary(expr, l, r);
+            };
+            case GREATER_EQUAL -> in -> {
+                var l = left.run(in);
+                var r = right.run(in);
+                if (l instanceof Double a && r instanceof Double b) return a >= b;
+                return in.binary(expr, l, r);
+            };
+            case LESS -> in -> {
+                var l = left.run(in);
+                var r = right.run(in);
+                if (l instanceof Double a && r instanceof Double b) return a < b;
+                return in.binary(expr, l, r);
+            };
+            case LESS_EQUAL -> in -> {
+                var l = left.run(in);
+                var r = right.run(in);
+                if (l instanceof Double a && r instanceof Double b) return a <= b;
+                return in.binary(expr, l, r);
+            };
+            case EQUAL_EQUAL -> in -> Objects.equals(left.run(in), right.run(in));
+            case BANG_EQUAL -> in -> !Objects.equals(left.run(in), right.run(in));
+            default -> throw new IllegalArgumentException("Not a binary operator: " + expr.operator().type);
+        };
+    }
+
+    private Code unary(Expr.Unary expr) {
+        var operand = expression(expr.right());
+        if (expr.operator().type == TokenType.BANG) {
+            return in -> !isTruthy(operand.run(in));
+        }
+        return in -> {
+            var value = operand.run(in);
+            if (value instanceof Double d) return -d;
+            return in.unary(expr, value);
+        };
+    }
+
+    private Code call(Expr.Call expr) {
+        var target = expression(expr.target());
+        var args = new Code[expr.args().size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = expression(expr.args().get(i));
+        }
+
+        return in -> {
+            var callee = target.run(in);
+            if (callee instanceof BoundNative bound) {
+                var values = new Object[args.length];
+                for (int i = 0; i < args.length; i++) {
+                    values[i] = args[i].run(in);
+                }
+                return in.invokeBound(expr, bound, values);
+            }
+
+            var values = new ArrayList<Object>(args.length);
+            for (var arg : args) {
+                values.add(arg.run(in));
+            }
+            return in.invoke(expr, in.callee(expr, callee, values), values);
+        };
+    }
+
+    // the variable is read and written through the assignment's resolution, as in the tree-walking interpreter
+    private Code increment(Expr.Increment expr) {
+        var original = expr.original();
+        var name = original.name();
+        var delta = expr.delta();
+        var operation = (Expr.Binary) original.value();
+        var constant = ((Expr.Literal) operation.right()).value();
+        var depth = depths.apply(original);
+
+        if (depth == null) {
+            var cell = cells.apply(name.lexeme);
+            return in -> {
+                var current = cell.get(name);
+                var value = current instanceof Double d ? (Object) (d + delta) : in.binary(operation, current, constant);
+                cell.set(name, value);
+                return value;
+            };
+        }
+        return in -> {
+            var scope = in.env.ancestor(depth);
+            var current = scope.getValue(name);
+            var value = current instanceof Double d ? (Object) (d + delta) : in.binary(operation, current, constant);
+            scope.assign(name, value);
+            return value;
+        };
+    }
+
+    private Code compareConstant(Expr.CompareConstant expr) {
+        var original = expr.original();
+        var variable = variable(original.left(), ((Expr.Variable) original.left()).name());
+        var c = expr.constant();
+        var constant = ((Expr.Literal) original.right()).value();
+        return switch (original.operator().type) {
+            case LESS -> in -> {
+                var value = variable.run(in);
+                if (value instanceof Double d) return d < c;
+                return in.binary(original, value, constant);
+            };
+            case LESS_EQUAL -> in -> {
+                var value = variable.run(in);
+                if (value instanceof Double d) return d <= c;
+                return in.binary(original, value, constant);
+            };
+            case GREATER -> in -> {
+                var value = variable.run(in);
+                if (value instanceof Double d) return d > c;
+                return in.binary(original, value, constant);
+            };
+            default -> in -> {
+                var value = variable.run(in);
+                if (value instanceof Double d) return d >= c;
+                return in.binary(original, value, constant);
+            };
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package com.interpreters.lox;
+
+import java.util.List;
+
+/**
+ * Runs programs compiled by {@link ClosureCompiler}: every statement is turned into a tree of lambdas once, right
+ * before it runs, and function calls run the lambdas compiled for the function's body. Compiled code passes
+ * {@link Return} and {@link Break} back as values, so they are only thrown where a body or top-level statement
+ * finishes.
+ */
+public class ClosureInterpreter extends Interpreter {
+    // shared with forks, which run the same code; made on first use, as the constructor can't hand out this::depth
+    private ClosureCompiler compiler;
+    // bodies this interpreter has called, so it only goes to the compiler once for each
+    private final WeakIdentityCache<List<Stmt>, ClosureCompiler.Action> bodies = new WeakIdentityCache<>();
+
+    public ClosureInterpreter(OutputSink out, ErrorReporter reporter) {
+        super(out, reporter);
+    }
+
+    private ClosureInterpreter(ClosureInterpreter parent) {
+        super(parent);
+        this.compiler = parent.compiler();
+    }
+
+    private ClosureCompiler compiler() {
+        if (compiler == null) {
+            compiler = new ClosureCompiler(this::depth, this::globalCell);
+        }
+        return compiler;
+    }
+
+    // the bodies still held by this interpreter and its compiler
+    int cachedBodies() {
+        return bodies.size() + compiler().cachedBodies();
+    }
+
+    @Override
+    Interpreter fork() {
+        return new ClosureInterpreter(this);
+    }
+
+    @Override
+    Object eval(Expr expr) {
+        return compiler().compile(expr).run(this);
+    }
+
+    @Override
+    void execute(Stmt statement) {
+        var signal = compiler().compile(statement).run(this);
+        if (signal != null) throw signal;
+    }
+
+    @Override
+    public void executeBlock(List<Stmt> statements, Environment environment) {
+        var body = bodies.get(statements);
+        if (body == null) {
+            body = compiler().body(statements);
+            bodies.put(statements, body);
+        }
+        var original = env;
+        RuntimeException signal;
+        try {
+            env = environment;
+            signal = body.run(this);
+        } finally {
+            env = original;
+        }
+        // a return, for LoxFunction.call to catch
+        if (signal != null) throw signal;
+    }
+}
@@ -0,0 +1,23 @@
+package com.interpreters.lox;
+
+/**
+ * Creates the interpreter a {@link LoxRuntime} executes programs with.
+ */
+@FunctionalInterface
+public interface Engine {
+    Engine TREE_WALKING = Interpreter::new;
+    // the tree-walking interpreter, dispatching with the generated switch over node types
+    Engine SWITCH = (out, reporter) -> new Interpreter(out, reporter, true);
+    Engine STACKLESS = stackless(StacklessInterpreter.DEFAULT_MAX_DEPTH);
+    Engine FLAT = FlatInterpreter::new;
+    Engine CLOSURE = ClosureInterpreter::new;
+
+    Interpreter create(OutputSink out, ErrorReporter reporter);
+
+    /**
+     * Keeps Lox calls off the Java stack, allowing up to {@code maxDepth} nested calls.
+     */
+    static Engine stackless(int maxDepth) {
+        return (out, reporter) -> new StacklessInterpreter(out, reporter, maxDepth);
+    }
+}
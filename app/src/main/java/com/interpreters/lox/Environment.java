@@ -1,10 +1,14 @@
 package com.interpreters.lox;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Environment {
-    private final Map<String, Object> variableMappings = new HashMap<>();
+    // ConcurrentHashMap can't hold nulls, so nil is stored as this marker
+    private static final Object NIL = new Object();
+
+    private final Map<String, Object> variableMappings = new ConcurrentHashMap<>();
     private Environment parent;
 
     public Environment() {
@@ -15,13 +19,12 @@ public class Environment {
     }
 
     public void define(String name, Object value) {
-        variableMappings.put(name, value);
+        variableMappings.put(name, wrap(value));
     }
 
     public void assign(Token token, Object value) {
         var name = token.lexeme;
-        if (variableMappings.containsKey(name)) {
-            variableMappings.put(name, value);
+        if (variableMappings.replace(name, wrap(value)) != null) {
             return;
         }
 
@@ -34,14 +37,13 @@ public class Environment {
 
     public Object getValue(Token name) {
         Object val = variableMappings.get(name.lexeme);
-        if (val == null) {
-            if (parent != null) {
-                return parent.getValue(name);
-            }
-            throw new RuntimeError(name, String.format("Undefined variable %s", name.lexeme));
+        if (val != null) {
+            return unwrap(val);
         }
-
-        return val;
+        if (parent != null) {
+            return parent.getValue(name);
+        }
+        throw new RuntimeError(name, String.format("Undefined variable %s", name.lexeme));
     }
 
     public Object getAt(int depth, Token name) {
@@ -49,7 +51,7 @@ public class Environment {
     }
 
     public Object getAt(int depth, String name) {
-        return ancestor(depth).variableMappings.get(name);
+        return unwrap(ancestor(depth).variableMappings.get(name));
     }
 
     public void assignAt(int depth, Token token, Object value) {
@@ -60,7 +62,7 @@ public class Environment {
         return parent;
     }
 
-    private Environment ancestor(int distance) {
+    Environment ancestor(int distance) {
         var environment = this;
         for (int i = 0; i < distance; i++) {
             environment = environment.parent;
@@ -68,8 +70,18 @@ public class Environment {
         return environment;
     }
 
+    private static Object wrap(Object value) {
+        return value == null ? NIL : value;
+    }
+
+    private static Object unwrap(Object value) {
+        return value == NIL ? null : value;
+    }
+
     @Override
     public String toString() {
-        return "Environment[vars=%s, parent=%s]".formatted(variableMappings, parent);
+        var vars = new StringJoiner(", ", "{", "}");
+        variableMappings.forEach((name, value) -> vars.add(name + "=" + unwrap(value)));
+        return "Environment[vars=%s, parent=%s]".formatted(vars, parent);
     }
 }
@@ -0,0 +1,54 @@
+package com.interpreters.lox;
+
+import java.io.PrintStream;
+
+public class ErrorReporter {
+    private final PrintStream out;
+    private final PrintStream err;
+    private boolean hadError;
+    private boolean hadRuntimeError;
+
+    public ErrorReporter() {
+        this(System.out, System.err);
+    }
+
+    public ErrorReporter(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public void error(int line, String error) {
+        report(line, "", error);
+    }
+
+    public void error(Token token, String error) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, "at end", error);
+        } else {
+            report(token.line, " at '%s'".formatted(token.lexeme), error);
+        }
+    }
+
+    public void runtimeError(RuntimeError error) {
+        err.printf("%s\n[line = %d]%n", error.getMessage(), error.getToken().line);
+        hadRuntimeError = true;
+    }
+
+    public void report(int line, String where, String error) {
+        out.printf("[line=%d] Error %s: %s%n", line, where, error);
+        hadError = true;
+    }
+
+    public boolean hadError() {
+        return hadError;
+    }
+
+    public boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
+    public void reset() {
+        hadError = false;
+        hadRuntimeError = false;
+    }
+}
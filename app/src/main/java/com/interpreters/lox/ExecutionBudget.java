@@ -0,0 +1,55 @@
+package com.interpreters.lox;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The limits of one run, shared by the interpreter and everything it forks. Interpreters don't touch it on
+ * every safepoint: each takes a grant of up to {@link #GRANT} steps and only comes back when it has used them up,
+ * which is also when the deadline and the interrupt flag are checked.
+ */
+final class ExecutionBudget {
+    static final int GRANT = 1024;
+
+    private final ExecutionLimits limits;
+    private final AtomicLong remainingSteps;
+    private final long deadline;
+    private volatile boolean interrupted;
+
+    ExecutionBudget(ExecutionLimits limits) {
+        this.limits = limits;
+        this.remainingSteps = new AtomicLong(limits.maxSteps());
+        this.deadline = limits.hasTimeout() ? System.nanoTime() + limits.timeout().toNanos() : 0;
+    }
+
+    /**
+     * Returns how many more safepoints the caller may pass before calling again.
+     */
+    int acquire(Token location) {
+        if (interrupted) {
+            throw new ExecutionLimitError(location, "Execution interrupted");
+        }
+        if (limits.hasTimeout() && System.nanoTime() - deadline > 0) {
+            throw new ExecutionLimitError(location,
+                    "Time limit of %d ms exceeded".formatted(limits.timeout().toMillis()));
+        }
+        if (!limits.hasStepLimit()) {
+            return GRANT;
+        }
+
+        while (true) {
+            long remaining = remainingSteps.get();
+            if (remaining <= 0) {
+                throw new ExecutionLimitError(location,
+                        "Step limit of %d exceeded".formatted(limits.maxSteps()));
+            }
+            long grant = Math.min(remaining, GRANT);
+            if (remainingSteps.compareAndSet(remaining, remaining - grant)) {
+                return (int) grant;
+            }
+        }
+    }
+
+    void interrupt() {
+        interrupted = true;
+    }
+}
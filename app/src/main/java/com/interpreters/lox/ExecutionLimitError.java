@@ -0,0 +1,10 @@
+package com.interpreters.lox;
+
+/**
+ * Raised at a safepoint when a run exceeds its {@link ExecutionLimits} or is interrupted.
+ */
+public class ExecutionLimitError extends RuntimeError {
+    public ExecutionLimitError(Token token, String message) {
+        super(token, message);
+    }
+}
@@ -0,0 +1,19 @@
+package com.interpreters.lox;
+
+import java.time.Duration;
+
+/**
+ * Per-run limits for untrusted scripts. {@code maxSteps} counts loop iterations and calls; zero or less means
+ * unlimited, as does a null {@code timeout}.
+ */
+public record ExecutionLimits(long maxSteps, Duration timeout) {
+    public static final ExecutionLimits NONE = new ExecutionLimits(0, null);
+
+    public boolean hasStepLimit() {
+        return maxSteps > 0;
+    }
+
+    public boolean hasTimeout() {
+        return timeout != null;
+    }
+}
@@ -15,17 +15,57 @@ public sealed interface Expr {
 		R visit(Function expr);
 		R visit(Get expr);
 		R visit(Set expr);
+		R visit(Index expr);
+		R visit(SetIndex expr);
 		R visit(This expr);
 		R visit(Super expr);
+		R visit(Increment expr);
+		R visit(CompareConstant expr);
+		R visit(CompoundAssign expr);
 	}
 
 	<R> R accept(Visitor<R> visitor);
 
+	static <R> R dispatch(Expr expr, Visitor<R> visitor) {
+		return switch (expr) {
+			case Assign node -> visitor.visit(node);
+			case Ternary node -> visitor.visit(node);
+			case Binary node -> visitor.visit(node);
+			case Grouping node -> visitor.visit(node);
+			case Literal node -> visitor.visit(node);
+			case Variable node -> visitor.visit(node);
+			case Unary node -> visitor.visit(node);
+			case Logical node -> visitor.visit(node);
+			case Call node -> visitor.visit(node);
+			case Function node -> visitor.visit(node);
+			case Get node -> visitor.visit(node);
+			case Set node -> visitor.visit(node);
+			case Index node -> visitor.visit(node);
+			case SetIndex node -> visitor.visit(node);
+			case This node -> visitor.visit(node);
+			case Super node -> visitor.visit(node);
+			case Increment node -> visitor.visit(node);
+			case CompareConstant node -> visitor.visit(node);
+			case CompoundAssign node -> visitor.visit(node);
+		};
+	}
+
     record Assign(Token name, Expr value) implements Expr {
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Ternary(Expr condition, Expr first, Expr second) implements Expr {
@@ -33,6 +73,17 @@ public sealed interface Expr {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Binary(Expr left, Token operator, Expr right) implements Expr {
@@ -40,6 +91,17 @@ public sealed interface Expr {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Grouping(Expr expression) implements Expr {
@@ -47,6 +109,17 @@ public sealed interface Expr {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Literal(Object value) implements Expr {
@@ -54,6 +127,17 @@ public sealed interface Expr {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Variable(Token name) implements Expr {
@@ -61,6 +145,17 @@ public sealed interface Expr {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Unary(Token operator, Expr right) implements Expr {
@@ -68,6 +163,17 @@ public sealed interface Expr {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Logical(Expr left, Token operator, Expr right) implements Expr {
@@ -75,6 +181,17 @@ public sealed interface Expr {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Call(Expr target, Token paren, List<Expr> args) implements Expr {
@@ -82,6 +199,17 @@ public sealed interface Expr {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Function(List<Token> params, List<Stmt> body) implements Expr {
@@ -89,6 +217,17 @@ public sealed interface Expr {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Get(Expr target, Token name) implements Expr {
@@ -96,6 +235,17 @@ public sealed interface Expr {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Set(Expr target, Token name, Expr value) implements Expr {
@@ -103,6 +253,53 @@ public sealed interface Expr {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    record Index(Expr target, Token bracket, Expr index) implements Expr {
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visit(this);
+        }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    record SetIndex(Expr target, Token bracket, Expr index, Expr value) implements Expr {
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visit(this);
+        }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record This(Token keyword) implements Expr {
@@ -110,6 +307,17 @@ public sealed interface Expr {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Super(Token keyword, Token method) implements Expr {
@@ -117,6 +325,71 @@ public sealed interface Expr {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    record Increment(Assign original, double delta) implements Expr {
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visit(this);
+        }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    record CompareConstant(Binary original, double constant) implements Expr {
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visit(this);
+        }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    record CompoundAssign(Assign original) implements Expr {
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visit(this);
+        }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,279 @@
+package com.interpreters.lox;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Resolved statements encoded for {@link FlatInterpreter}. A node is a run of ints in one array: its kind followed
+ * by operands, which are offsets of child nodes, resolved scope depths, global use site numbers, or indices into a
+ * constant pool holding literal values, names and the tree nodes that error messages and declarations need.
+ * Children are written just before their parent, so a subtree occupies one contiguous range.
+ * <p>
+ * Statements, expressions and function bodies are encoded when first executed and looked up by identity after
+ * that; function nodes also hold the node of their body, so calls go straight to it. Encoding only appends, so
+ * offsets stay valid and a reader holding an older array can still run every node it was handed out with.
+ */
+final class FlatAst {
+    // expressions
+    static final int LITERAL = 0;           // constant
+    static final int LOCAL = 1;             // depth, name token
+    static final int GLOBAL = 2;            // site, name token
+    static final int ASSIGN_LOCAL = 3;      // depth, name token, value
+    static final int ASSIGN_GLOBAL = 4;     // site, name token, value
+    static final int ADD = 5;               // Expr.Binary, left, right; likewise up to LESS_EQUAL
+    static final int SUBTRACT = 6;
+    static final int MULTIPLY = 7;
+    static final int DIVIDE = 8;
+    static final int EQUAL = 9;
+    static final int NOT_EQUAL = 10;
+    static final int GREATER = 11;
+    static final int GREATER_EQUAL = 12;
+    static final int LESS = 13;
+    static final int LESS_EQUAL = 14;
+    static final int NEGATE = 15;           // Expr.Unary, operand
+    static final int NOT = 16;              // operand
+    static final int AND = 17;              // left, right
+    static final int OR = 18;               // left, right
+    static final int TERNARY = 19;          // condition, first, second
+    static final int CALL = 20;             // Expr.Call, target, argument count, arguments...
+    static final int FUNCTION = 21;         // Expr.Function, body
+    static final int GET = 22;              // Expr.Get, target
+    static final int SET = 23;              // Expr.Set, target, value
+    static final int INDEX = 24;            // bracket token, target, index
+    static final int SET_INDEX = 25;        // bracket token, target, index, value
+    static final int SUPER = 26;            // Expr.Super
+
+    // statements; NONE stands for a missing optional child
+    static final int EXPRESSION = 27;       // expression
+    static final int PRINT = 28;            // expression
+    static final int VAR = 29;              // name, initializer or NONE
+    static final int BLOCK = 30;            // statement count, statements...
+    static final int BODY = 31;             // statement count, statements...; runs in the caller's environment
+    static final int IF = 32;               // condition, then, else or NONE
+    static final int WHILE = 33;            // keyword token, condition, body
+    static final int FUN = 34;              // Stmt.Function, body
+    static final int CLASS = 35;            // Stmt.Class
+    static final int BREAK = 36;
+    static final int RETURN = 37;           // value or NONE
+
+    static final int NONE = -1;
+
+    // scope depth of a resolved local, or null for globals
+    private final Function<Expr, Integer> depths;
+
+    // volatile so that readers see a grown array with its contents
+    private volatile int[] code = new int[1024];
+    private int size;
+    private volatile Object[] constants = new Object[256];
+    private int constantCount;
+    private int sites;
+    // node of every statement, expression and function body (a List<Stmt>) encoded so far; guarded by this, as
+    // interpreters keep the nodes they have looked up themselves
+    private final Map<Object, Integer> roots = new IdentityHashMap<>();
+
+    FlatAst(Function<Expr, Integer> depths) {
+        this.depths = depths;
+    }
+
+    /**
+     * The node {@code root} is encoded at, encoding it along with the bodies of functions declared in it first if
+     * it hasn't been yet.
+     */
+    synchronized int add(Object root) {
+        var found = roots.get(root);
+        if (found != null) return found;
+
+        int node = switch (root) {
+            case Stmt stmt -> statement(stmt);
+            case Expr expr -> expression(expr);
+            case List<?> body -> body(body);
+            default -> throw new IllegalArgumentException("Can't encode " + root);
+        };
+        roots.put(root, node);
+        return node;
+    }
+
+    // only valid for nodes returned by add before the call
+    int[] code() {
+        return code;
+    }
+
+    Object[] constants() {
+        return constants;
+    }
+
+    int sites() {
+        return sites;
+    }
+
+    private int statement(Stmt stmt) {
+        return switch (stmt) {
+            case Stmt.Expression s -> node(EXPRESSION, expression(s.expr()));
+            case Stmt.Print s -> node(PRINT, expression(s.expr()));
+            case Stmt.VarDeclaration s -> node(VAR, constant(s.name().lexeme), optional(s.initializer()));
+            case Stmt.Block s -> sequence(BLOCK, s.statements());
+            case Stmt.If s -> {
+                int condition = expression(s.condition());
+                int thenClause = statement(s.thenClause());
+                int elseClause = s.elseClause() != null ? statement(s.elseClause()) : NONE;
+                yield node(IF, condition, thenClause, elseClause);
+            }
+            case Stmt.While s -> {
+                int condition = expression(s.condition());
+                yield node(WHILE, constant(s.keyword()), condition, statement(s.body()));
+            }
+            case Stmt.Function s -> {
+                int body = function(s.function());
+                yield node(FUN, constant(s), body);
+            }
+            case Stmt.Class s -> {
+                for (var method : s.methods()) {
+                    function(method.function());
+                }
+                yield node(CLASS, constant(s));
+            }
+            case Stmt.Break s -> node(BREAK);
+            case Stmt.Return s -> node(RETURN, optional(s.value()));
+        };
+    }
+
+    private int expression(Expr expr) {
+        return switch (expr) {
+            case Expr.Literal e -> node(LITERAL, constant(e.value()));
+            case Expr.Grouping e -> expression(e.expression());
+            case Expr.Variable e -> variable(e, e.name());
+            case Expr.This e -> variable(e, e.keyword());
+            case Expr.Assign e -> {
+                int value = expression(e.value());
+                var depth = depths.apply(e);
+                yield depth != null
+                        ? node(ASSIGN_LOCAL, depth, constant(e.name()), value)
+                        : node(ASSIGN_GLOBAL, sites++, constant(e.name()), value);
+            }
+            case Expr.Binary e -> {
+                int left = expression(e.left());
+                int right = expression(e.right());
+                yield node(binaryKind(e.operator().type), constant(e), left, right);
+            }
+            case Expr.Unary e -> {
+                int operand = expression(e.right());
+                yield e.operator().type == TokenType.BANG ? node(NOT, operand) : node(NEGATE, constant(e), operand);
+            }
+            case Expr.Logical e -> {
+                int left = expression(e.left());
+                int right = expression(e.right());
+                yield node(e.operator().type == TokenType.OR ? OR : AND, left, right);
+            }
+            case Expr.Ternary e -> {
+                int condition = expression(e.condition());
+                int first = expression(e.first());
+                yield node(TERNARY, condition, first, expression(e.second()));
+            }
+            case Expr.Call e -> {
+                var operands = new int[e.args().size() + 3];
+                operands[0] = constant(e);
+                operands[1] = expression(e.target());
+                operands[2] = e.args().size();
+                for (int i = 0; i < e.args().size(); i++) {
+                    operands[i + 3] = expression(e.args().get(i));
+                }
+                yield node(CALL, operands);
+            }
+            case Expr.Function e -> {
+                int body = function(e);
+                yield node(FUNCTION, constant(e), body);
+            }
+            case Expr.Get e -> node(GET, constant(e), expression(e.target()));
+            case Expr.Set e -> {
+                int target = expression(e.target());
+                yield node(SET, constant(e), target, expression(e.value()));
+            }
+            case Expr.Index e -> {
+                int target = expression(e.target());
+                yield node(INDEX, constant(e.bracket()), target, expression(e.index()));
+            }
+            case Expr.SetIndex e -> {
+                int target = expression(e.target());
+                int index = expression(e.index());
+                yield node(SET_INDEX, constant(e.bracket()), target, index, expression(e.value()));
+            }
+            case Expr.Super e -> node(SUPER, constant(e));
+            // the flat encoding has its own fast paths; fused nodes are encoded like the nodes they replace
+            case Expr.Increment e -> expression(e.original());
+            case Expr.CompareConstant e -> expression(e.original());
+            case Expr.CompoundAssign e -> expression(e.original());
+        };
+    }
+
+    private int variable(Expr expr, Token name) {
+        var depth = depths.apply(expr);
+        return depth != null ? node(LOCAL, depth, constant(name)) : node(GLOBAL, sites++, constant(name));
+    }
+
+    private static int binaryKind(TokenType operator) {
+        return switch (operator) {
+            case PLUS -> ADD;
+            case MINUS -> SUBTRACT;
+            case STAR -> MULTIPLY;
+            case SLASH -> DIVIDE;
+            case EQUAL_EQUAL -> EQUAL;
+            case BANG_EQUAL -> NOT_EQUAL;
+            case GREATER -> GREATER;
+            case GREATER_EQUAL -> GREATER_EQUAL;
+            case LESS -> LESS;
+            case LESS_EQUAL -> LESS_EQUAL;
+            default -> throw new IllegalArgumentException("Not a binary operator: " + operator);
+        };
+    }
+
+    // bodies are roots of their own, as methods are called through LoxFunction.call; returns the body's node
+    private int function(Expr.Function function) {
+        var body = roots.get(function.body());
+        if (body == null) {
+            body = body(function.body());
+            roots.put(function.body(), body);
+        }
+        return body;
+    }
+
+    private int body(List<?> statements) {
+        @SuppressWarnings("unchecked")
+        var body = (List<Stmt>) statements;
+        return sequence(BODY, body);
+    }
+
+    private int sequence(int kind, List<Stmt> statements) {
+        var operands = new int[statements.size() + 1];
+        operands[0] = statements.size();
+        for (int i = 0; i < statements.size(); i++) {
+            operands[i + 1] = statement(statements.get(i));
+        }
+        return node(kind, operands);
+    }
+
+    private int optional(Expr expr) {
+        return expr != null ? expression(expr) : NONE;
+    }
+
+    private int node(int kind, int... operands) {
+        if (size + operands.length + 1 > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + operands.length + 1));
+        }
+        int node = size;
+        code[size++] = kind;
+        System.arraycopy(operands, 0, code, size, operands.length);
+        size += operands.length;
+        return node;
+    }
+
+    private int constant(Object value) {
+        if (constantCount == constants.length) {
+            constants = Arrays.copyOf(constants, constants.length * 2);
+        }
+        constants[constantCount] = value;
+        return constantCount++;
+    }
+}
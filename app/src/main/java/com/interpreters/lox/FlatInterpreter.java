@@ -0,0 +1,303 @@
+package com.interpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.interpreters.lox.FlatAst.*;
+
+/**
+ * Runs programs from their {@link FlatAst} encoding: a switch over node kinds walks int offsets instead of
+ * dispatching through visitors, resolved locals are read at the depth stored in the node, and global use sites
+ * keep their cell in an array indexed by site number rather than in the resolution map. Number operations are
+ * done inline; everything else, including error reporting, goes through the tree-walking helpers with the
+ * original tree node.
+ */
+public class FlatInterpreter extends Interpreter {
+    // shared with forks, which run the same code; made on first use, as the constructor can't hand out this::depth
+    private FlatAst ast;
+    // nodes this interpreter has looked up, so it only goes to the shared encoding once for each root
+    private final Map<Object, Integer> nodes = new IdentityHashMap<>();
+    private int[] code;
+    private Object[] constants;
+    private GlobalCell[] cells = new GlobalCell[0];
+
+    public FlatInterpreter(OutputSink out, ErrorReporter reporter) {
+        super(out, reporter);
+    }
+
+    private FlatInterpreter(FlatInterpreter parent) {
+        super(parent);
+        this.ast = parent.ast();
+    }
+
+    @Override
+    Interpreter fork() {
+        return new FlatInterpreter(this);
+    }
+
+    @Override
+    Object eval(Expr expr) {
+        return evaluate(node(expr));
+    }
+
+    @Override
+    void execute(Stmt statement) {
+        run(node(statement));
+    }
+
+    @Override
+    public void executeBlock(List<Stmt> statements, Environment environment) {
+        int node = node(statements);
+        var original = env;
+        try {
+            env = environment;
+            run(node);
+        } finally {
+            env = original;
+        }
+    }
+
+    private FlatAst ast() {
+        if (ast == null) {
+            ast = new FlatAst(this::depth);
+        }
+        return ast;
+    }
+
+    private int node(Object root) {
+        var node = nodes.get(root);
+        if (node == null) {
+            node = ast().add(root);
+            nodes.put(root, node);
+        }
+        sync();
+        return node;
+    }
+
+    // the node about to run may have been encoded since, here or by another thread, after the arrays grew
+    private void sync() {
+        if (code != ast.code() || constants != ast.constants() || cells.length < ast.sites()) {
+            refresh();
+        }
+    }
+
+    private void refresh() {
+        code = ast.code();
+        constants = ast.constants();
+        // grown ahead, so a program adding sites one statement at a time doesn't copy them every time
+        if (cells.length < ast.sites()) {
+            cells = Arrays.copyOf(cells, Math.max(ast.sites(), cells.length * 2));
+        }
+    }
+
+    private Object evaluate(int node) {
+        var code = this.code;
+        return switch (code[node]) {
+            case LITERAL -> constants[code[node + 1]];
+            case LOCAL -> env.getAt(code[node + 1], (Token) constants[code[node + 2]]);
+            case GLOBAL -> cell(code[node + 1], code[node + 2]).get((Token) constants[code[node + 2]]);
+            case ASSIGN_LOCAL -> {
+                var value = evaluate(code[node + 3]);
+                env.assignAt(code[node + 1], (Token) constants[code[node + 2]], value);
+                yield value;
+            }
+            case ASSIGN_GLOBAL -> {
+                var value = evaluate(code[node + 3]);
+                cell(code[node + 1], code[node + 2]).set((Token) constants[code[node + 2]], value);
+                yield value;
+            }
+            case ADD -> {
+                var left = evaluate(code[node + 2]);
+                var right = evaluate(code[node + 3]);
+                if (left instanceof Double l && right instanceof Double r) yield l + r;
+                yield binary((Expr.Binary) constants[code[node + 1]], left, right);
+            }
+            case SUBTRACT, MULTIPLY, DIVIDE, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL -> {
+                var left = evaluate(code[node + 2]);
+                var right = evaluate(code[node + 3]);
+                if (left instanceof Double l && right instanceof Double r) {
+                    yield arithmetic(code[node], l, r);
+                }
+                // reports the error
+                yield binary((Expr.Binary) constants[code[node + 1]], left, right);
+            }
+            case EQUAL -> Objects.equals(evaluate(code[node + 2]), evaluate(code[node + 3]));
+            case NOT_EQUAL -> !Objects.equals(evaluate(code[node + 2]), evaluate(code[node + 3]));
+            case NEGATE -> {
+                var operand = evaluate(code[node + 2]);
+                if (operand instanceof Double d) yield -d;
+                yield unary((Expr.Unary) constants[code[node + 1]], operand);
+            }
+            case NOT -> !isTruthy(evaluate(code[node + 1]));
+            case AND -> {
+                var left = evaluate(code[node + 1]);
+                yield isTruthy(left) ? evaluate(code[node + 2]) : left;
+            }
+            case OR -> {
+                var left = evaluate(code[node + 1]);
+                yield isTruthy(left) ? left : evaluate(code[node + 2]);
+            }
+            case TERNARY -> isTruthy(evaluate(code[node + 1])) ? evaluate(code[node + 2]) : evaluate(code[node + 3]);
+            case CALL -> {
+                var expr = (Expr.Call) constants[code[node + 1]];
+                var target = evaluate(code[node + 2]);
+                int argc = code[node + 3];
+                var args = new ArrayList<Object>(argc);
+                for (int i = 0; i < argc; i++) {
+                    args.add(evaluate(code[node + 4 + i]));
+                }
+                yield invoke(expr, callee(expr, target, args), args);
+            }
+            case FUNCTION -> new FlatFunction(null, (Expr.Function) constants[code[node + 1]], env, false, code[node + 2]);
+            case GET -> getProperty((Expr.Get) constants[code[node + 1]], evaluate(code[node + 2]));
+            case SET -> {
+                var expr = (Expr.Set) constants[code[node + 1]];
+                var instance = instance(expr, evaluate(code[node + 2]));
+                instance.set(expr.name(), evaluate(code[node + 3]));
+                yield null;
+            }
+            case INDEX -> {
+                var bracket = (Token) constants[code[node + 1]];
+                var target = indexable(bracket, evaluate(code[node + 2]));
+                yield target.getIndex(bracket, evaluate(code[node + 3]));
+            }
+            case SET_INDEX -> {
+                var bracket = (Token) constants[code[node + 1]];
+                var target = indexable(bracket, evaluate(code[node + 2]));
+                var index = evaluate(code[node + 3]);
+                var value = evaluate(code[node + 4]);
+                target.setIndex(bracket, index, value);
+                yield value;
+            }
+            case SUPER -> visit((Expr.Super) constants[code[node + 1]]);
+            default -> throw new IllegalStateException("Not an expression node: " + code[node]);
+        };
+    }
+
+    private static Object arithmetic(int kind, double left, double right) {
+        return switch (kind) {
+            case SUBTRACT -> left - right;
+            case MULTIPLY -> left * right;
+            case DIVIDE -> left / right;
+            case GREATER -> left > right;
+            case GREATER_EQUAL -> left >= right;
+            case LESS -> left < right;
+            case LESS_EQUAL -> left <= right;
+            default -> throw new IllegalStateException("Not an arithmetic node: " + kind);
+        };
+    }
+
+    private GlobalCell cell(int site, int name) {
+        var cell = cells[site];
+        if (cell == null) {
+            cell = globalCell(((Token) constants[name]).lexeme);
+            cells[site] = cell;
+        }
+        return cell;
+    }
+
+    private void run(int node) {
+        var code = this.code;
+        switch (code[node]) {
+            case EXPRESSION -> evaluate(code[node + 1]);
+            case PRINT -> print(evaluate(code[node + 1]));
+            case VAR -> {
+                int initializer = code[node + 2];
+                env.define((String) constants[code[node + 1]], initializer != NONE ? evaluate(initializer) : null);
+            }
+            case BLOCK -> {
+                var original = env;
+                try {
+                    env = new Environment(env);
+                    sequence(code, node);
+                } finally {
+                    env = original;
+                }
+            }
+            case BODY -> sequence(code, node);
+            case IF -> {
+                if (isTruthy(evaluate(code[node + 1]))) {
+                    run(code[node + 2]);
+                } else if (code[node + 3] != NONE) {
+                    run(code[node + 3]);
+                }
+            }
+            case WHILE -> {
+                var keyword = (Token) constants[code[node + 1]];
+                try {
+                    while (isTruthy(evaluate(code[node + 2]))) {
+                        run(code[node + 3]);
+                        safepoint(keyword);
+                    }
+                } catch (Break ignored) {}
+            }
+            case FUN -> {
+                var stmt = (Stmt.Function) constants[code[node + 1]];
+                var name = stmt.name().lexeme;
+                env.define(name, new FlatFunction(name, stmt.function(), env, false, code[node + 2]));
+            }
+            case CLASS -> visit((Stmt.Class) constants[code[node + 1]]);
+            case BREAK -> throw new Break();
+            case RETURN -> {
+                int value = code[node + 1];
+                throw new Return(value != NONE ? evaluate(value) : null);
+            }
+            default -> throw new IllegalStateException("Not a statement node: " + code[node]);
+        }
+    }
+
+    private void body(int node, Environment environment) {
+        sync();
+        var original = env;
+        try {
+            env = environment;
+            run(node);
+        } finally {
+            env = original;
+        }
+    }
+
+    // methods are declared through the tree-walking helpers; their bodies are encoded with the class
+    @Override
+    LoxFunction function(String name, Expr.Function function, boolean isInitializer) {
+        return new FlatFunction(name, function, env, isInitializer, node(function.body()));
+    }
+
+    private void sequence(int[] code, int node) {
+        int count = code[node + 1];
+        for (int i = 0; i < count; i++) {
+            run(code[node + 2 + i]);
+        }
+    }
+
+    /**
+     * A function that knows the node its body is encoded at, so calling it doesn't look the body up.
+     */
+    private static final class FlatFunction extends LoxFunction {
+        private final int body;
+
+        FlatFunction(String name, Expr.Function function, Environment environment, boolean isInitializer, int body) {
+            super(name, function, environment, isInitializer);
+            this.body = body;
+        }
+
+        @Override
+        void execute(Interpreter interpreter, Environment env) {
+            // forks share the encoding, so the node is theirs too
+            if (interpreter instanceof FlatInterpreter flat) {
+                flat.body(body, env);
+            } else {
+                super.execute(interpreter, env);
+            }
+        }
+
+        @Override
+        LoxFunction withClosure(Environment environment) {
+            return new FlatFunction(name(), declaration(), environment, isInitializer(), body);
+        }
+    }
+}
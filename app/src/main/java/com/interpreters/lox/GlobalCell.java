@@ -0,0 +1,44 @@
+package com.interpreters.lox;
+
+/**
+ * Storage for one global variable. A cell is created the first time its name is defined or looked up and is
+ * never replaced, so use sites can hold on to it; redefining the global only changes the value inside.
+ */
+final class GlobalCell {
+    // value of a cell whose global has been referenced but not defined yet
+    private static final Object UNDEFINED = new Object();
+
+    private final String name;
+    private volatile Object value = UNDEFINED;
+
+    GlobalCell(String name) {
+        this.name = name;
+    }
+
+    Object get(Token token) {
+        var val = value;
+        if (val == UNDEFINED) {
+            throw undefined(token);
+        }
+        return val;
+    }
+
+    void set(Token token, Object val) {
+        if (value == UNDEFINED) {
+            throw undefined(token);
+        }
+        value = val;
+    }
+
+    void define(Object val) {
+        value = val;
+    }
+
+    void undefine() {
+        value = UNDEFINED;
+    }
+
+    private RuntimeError undefined(Token token) {
+        return new RuntimeError(token, String.format("Undefined variable %s", name));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.interpreters.lox;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The outermost environment. Globals live in {@link GlobalCell}s; the resolver numbers the globals a program uses
+ * and each interpreter keeps their cells in an array, so after the first access reading a global takes the
+ * resolution lookup every variable does and an array load, rather than a second lookup by name.
+ */
+public class GlobalEnvironment extends Environment {
+    private final Map<String, GlobalCell> cells = new ConcurrentHashMap<>();
+
+    public GlobalCell cell(String name) {
+        return cells.computeIfAbsent(name, GlobalCell::new);
+    }
+
+    @Override
+    public void define(String name, Object value) {
+        cell(name).define(value);
+    }
+
+    public void undefine(String name) {
+        var cell = cells.get(name);
+        if (cell != null) {
+            cell.undefine();
+        }
+    }
+
+    @Override
+    public void assign(Token token, Object value) {
+        cell(token.lexeme).set(token, value);
+    }
+
+    @Override
+    public Object getValue(Token name) {
+        return cell(name.lexeme).get(name);
+    }
+
+    @Override
+    public String toString() {
+        return "GlobalEnvironment[vars=%s]".formatted(cells.keySet());
+    }
+}
\ No newline at end of file
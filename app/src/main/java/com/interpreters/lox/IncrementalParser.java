@@ -0,0 +1,174 @@
+package com.interpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A scanner and parser front end for editors that keeps the tokens and tree of a file between edits.
+ * <p>
+ * {@link #edit} rescans from the token before the edit until a new token lines up with an old one past it; the
+ * rest of the old tokens are kept, with their offsets and lines shifted in place. Top-level statements that lie
+ * entirely before or after the rescanned tokens are kept as they are (so untouched function and class bodies are
+ * neither rescanned nor reparsed), and the parser resumes from the first statement the edit could affect until it
+ * reaches the start of an old statement again.
+ * <p>
+ * Errors are reported for the rescanned and reparsed region only. Statements with parse errors are null.
+ */
+public class IncrementalParser {
+    private final ErrorReporter reporter;
+    private String source;
+    private final List<Token> tokens;
+    private final List<Stmt> statements;
+    // token index each top-level statement starts at; statements are contiguous, so each ends where the next starts
+    private final List<Integer> starts;
+
+    public IncrementalParser(String source, ErrorReporter reporter) {
+        this.source = source;
+        this.reporter = reporter;
+        this.tokens = new ArrayList<>(new Scanner(source, reporter).scan());
+        this.statements = new ArrayList<>();
+        this.starts = new ArrayList<>();
+        parseFrom(0, Integer.MAX_VALUE, statements, starts);
+    }
+
+    public String source() {
+        return source;
+    }
+
+    public List<Token> tokens() {
+        return Collections.unmodifiableList(tokens);
+    }
+
+    public List<Stmt> statements() {
+        return Collections.unmodifiableList(statements);
+    }
+
+    /**
+     * Replaces {@code removed} characters at {@code offset} with {@code inserted} and returns the new tree.
+     */
+    public List<Stmt> edit(int offset, int removed, String inserted) {
+        if (offset < 0 || removed < 0 || offset + removed > source.length()) {
+            throw new IndexOutOfBoundsException("Edit %d+%d outside of source of length %d"
+                    .formatted(offset, removed, source.length()));
+        }
+
+        source = source.substring(0, offset) + inserted + source.substring(offset + removed);
+        int delta = inserted.length() - removed;
+        int editEnd = offset + inserted.length();
+
+        // rescan from the last token starting before the edit: the edit may extend it
+        int before = tokenBefore(offset);
+        int first = Math.max(before, 0);
+        int scanFrom = before < 0 ? 0 : tokens.get(first).offset;
+        int scanLine = before < 0 ? 1 : lineAtStart(tokens.get(first));
+        int[] resumed = {-1, 0}; // old index and new line of the token the scanner lined up with
+        var rescanned = new Scanner(source, reporter).rescan(scanFrom, scanLine, token -> {
+            if (token.offset < editEnd) return false;
+            int old = tokenAt(token.offset - delta);
+            if (old < 0 || !sameToken(tokens.get(old), token)) return false;
+            resumed[0] = old;
+            resumed[1] = token.line;
+            return true;
+        });
+
+        int resume = resumed[0] < 0 ? tokens.size() : resumed[0];
+        if (resumed[0] >= 0) {
+            int lineDelta = resumed[1] - tokens.get(resume).line;
+            for (int i = resume; i < tokens.size(); i++) {
+                var token = tokens.get(i);
+                token.offset += delta;
+                token.line += lineDelta;
+            }
+        }
+
+        // old statements ending before the rescanned tokens are kept, as are those starting after them
+        int shift = rescanned.size() - (resume - first);
+        int dirty = 0;
+        while (dirty + 1 < starts.size() && starts.get(dirty + 1) < first) {
+            dirty++;
+        }
+        int clean = dirty;
+        while (clean < starts.size() && starts.get(clean) < resume) {
+            clean++;
+        }
+
+        tokens.subList(first, resume).clear();
+        tokens.addAll(first, rescanned);
+
+        var suffixStarts = new ArrayList<Integer>();
+        for (int i = clean; i < starts.size(); i++) {
+            suffixStarts.add(starts.get(i) + shift);
+        }
+        var suffix = new ArrayList<>(statements.subList(clean, statements.size()));
+
+        int from = dirty < starts.size() ? starts.get(dirty) : first;
+        statements.subList(dirty, statements.size()).clear();
+        starts.subList(dirty, starts.size()).clear();
+
+        int stop = suffixStarts.isEmpty() ? Integer.MAX_VALUE : suffixStarts.get(0);
+        int reached = parseFrom(from, stop, statements, starts);
+
+        // the reparse may have run into the kept statements; drop the ones it swallowed
+        int kept = 0;
+        while (kept < suffixStarts.size() && suffixStarts.get(kept) < reached) {
+            kept++;
+        }
+        if (kept == suffixStarts.size() || suffixStarts.get(kept) != reached) {
+            // swallowed every kept statement, or ended between old statement boundaries: parse the rest afresh
+            parseFrom(reached, Integer.MAX_VALUE, statements, starts);
+        } else {
+            statements.addAll(suffix.subList(kept, suffix.size()));
+            starts.addAll(suffixStarts.subList(kept, suffixStarts.size()));
+        }
+
+        return statements();
+    }
+
+    /**
+     * Parses top-level declarations from token {@code from} until EOF or the first declaration starting at or
+     * after {@code stop}. Returns the token index it stopped at.
+     */
+    private int parseFrom(int from, int stop, List<Stmt> into, List<Integer> intoStarts) {
+        var parser = new Parser(tokens, reporter);
+        int position = from;
+        while (tokens.get(position).type != TokenType.EOF && position < stop) {
+            intoStarts.add(position);
+            into.add(parser.parseDeclarationAt(position));
+            position = parser.position();
+        }
+        return position;
+    }
+
+    // a token's line is the one it ends on, which differs for multi-line strings
+    private static int lineAtStart(Token token) {
+        return token.line - (int) token.lexeme.chars().filter(c -> c == '\n').count();
+    }
+
+    private static boolean sameToken(Token a, Token b) {
+        return a.type == b.type && a.lexeme.equals(b.lexeme);
+    }
+
+    // index of the last token starting before offset, or -1
+    private int tokenBefore(int offset) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (tokens.get(mid).offset < offset) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // index of the token starting exactly at offset, or -1
+    private int tokenAt(int offset) {
+        int index = tokenBefore(offset) + 1;
+        return index < tokens.size() && tokens.get(index).offset == offset ? index : -1;
+    }
+}
@@ -1,60 +1,227 @@
 package com.interpreters.lox;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
-    private final Environment globals = new Environment();
-    private Environment env = globals;
-    private final Map<Expr, Integer> resolutions = new HashMap<>();
-
-    public Interpreter() {
-        this.globals.define("clock", new LoxCallable() {
-            @Override
-            public int arity() {
-                return 0;
+    private final GlobalEnvironment globals;
+    Environment env;
+    // scope depth of a resolved local, or -1 - the index of a global's cell in cells
+    private final Map<Expr, Integer> slots;
+    // index in cells of every global name resolved so far, shared with forks
+    private final Map<String, Integer> globalIndexes;
+    // cells of the globals, filled in on first access; every fork has its own
+    private GlobalCell[] cells = new GlobalCell[0];
+    private final OutputSink out;
+    private final Set<LoxWriter> openWriters;
+    private final ErrorReporter reporter;
+    // dispatch on node types with the generated switch instead of accept
+    private final boolean switchDispatch;
+    private volatile ExecutionBudget budget = new ExecutionBudget(ExecutionLimits.NONE);
+    // an interrupt that came while no run was in progress, for the next run to pick up
+    private volatile boolean interruptPending;
+    // safepoints left before the budget has to be consulted again
+    private int ticks;
+
+    public Interpreter(OutputSink out, ErrorReporter reporter) {
+        this(out, reporter, false);
+    }
+
+    public Interpreter(OutputSink out, ErrorReporter reporter, boolean switchDispatch) {
+        this.switchDispatch = switchDispatch;
+        this.globals = new GlobalEnvironment();
+        this.env = globals;
+        this.slots = new ConcurrentHashMap<>();
+        this.globalIndexes = new ConcurrentHashMap<>();
+        this.out = out;
+        this.openWriters = ConcurrentHashMap.newKeySet();
+        this.reporter = reporter;
+
+        defineNative("clock", 0, (interpreter, args) -> System.currentTimeMillis() / 1000.0);
+        // seconds since the interpreter started; measured from an origin so a double keeps nanosecond precision
+        var nanoOrigin = System.nanoTime();
+        defineNative("nanoClock", 0, (interpreter, args) -> (System.nanoTime() - nanoOrigin) / 1e9);
+        defineNative("bench", 2, (interpreter, args) -> {
+            if (!(args.get(0) instanceof LoxCallable fn)) {
+                throw new RuntimeError("Can only benchmark functions");
             }
+            return Benchmark.run(interpreter, fn, toInt(args.get(1), "Iterations"));
+        });
+
+        defineNative("array", 0, (interpreter, args) -> new LoxArray());
+        defineNative("map", 0, (interpreter, args) -> new LoxMap());
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> args) {
-                return System.currentTimeMillis() / 1000.0;
+        defineNative("memo", 1, (interpreter, args) -> {
+            if (!(args.get(0) instanceof LoxCallable fn)) {
+                throw new RuntimeError("Can only memoize functions");
             }
+            return new MemoizedFunction(fn, MemoizedFunction.DEFAULT_CAPACITY);
+        });
+
+        defineNative("readLine", 0, (interpreter, args) -> LoxReader.stdin().readLine());
+        defineNative("open", 2, (interpreter, args) -> openFile(args.get(0), args.get(1)));
 
-            @Override
-            public String toString() {
-                return "<native fn clock()>";
+        defineNative("spawn", 1, (interpreter, args) -> {
+            if (!(args.get(0) instanceof LoxCallable fn)) {
+                throw new RuntimeError("Can only spawn functions");
             }
+            return LoxFuture.spawn(interpreter, fn);
+        });
+        defineNative("await", 1, (interpreter, args) -> {
+            if (!(args.get(0) instanceof LoxFuture future)) {
+                throw new RuntimeError("Can only await futures");
+            }
+            return future.await();
+        });
+        defineNative("channel", 1, (interpreter, args) -> new LoxChannel(toInt(args.get(0), "Channel capacity")));
+        defineNative("send", 2, (interpreter, args) -> {
+            toChannel(args.get(0)).send(args.get(1));
+            return null;
+        });
+        defineNative("receive", 1, (interpreter, args) -> toChannel(args.get(0)).receive());
+        defineNative("close", 1, (interpreter, args) -> {
+            toChannel(args.get(0)).close();
+            return null;
         });
+
+        for (var bound : NativeModules.all()) {
+            globals.define(bound.name(), bound);
+        }
+    }
+
+    /**
+     * Creates an interpreter for another thread: it shares globals, resolutions and output with this one,
+     * but has its own current environment.
+     */
+    Interpreter(Interpreter parent) {
+        this.globals = parent.globals;
+        this.env = parent.globals;
+        this.slots = parent.slots;
+        this.globalIndexes = parent.globalIndexes;
+        this.out = parent.out;
+        this.openWriters = parent.openWriters;
+        this.reporter = parent.reporter;
+        this.switchDispatch = parent.switchDispatch;
+        this.budget = parent.budget;
+    }
+
+    Interpreter fork() {
+        return new Interpreter(this);
+    }
+
+    private void defineNative(String name, int arity, NativeFunction.Body body) {
+        globals.define(name, new NativeFunction(name, arity, body));
     }
 
-    public void interpret(List<Stmt> statements) {
+    /**
+     * Writes out buffered {@code print} output and anything written to files the script hasn't closed yet.
+     */
+    public void flush() {
+        out.flush();
+        for (var writer : openWriters) {
+            writer.flush();
+        }
+    }
+
+    private Object openFile(Object path, Object mode) {
+        if (!(path instanceof String name)) {
+            throw new RuntimeError("File path should be a string");
+        }
+
         try {
-            for (var stmt : statements) {
+            if ("r".equals(mode)) {
+                return LoxReader.open(Path.of(name));
+            }
+            if ("w".equals(mode) || "a".equals(mode)) {
+                var writer = LoxWriter.open(Path.of(name), "a".equals(mode), openWriters::remove);
+                openWriters.add(writer);
+                return writer;
+            }
+        } catch (IOException e) {
+            throw new RuntimeError("Can't open '%s': %s".formatted(name, e.getMessage()));
+        }
+
+        throw new RuntimeError("File mode should be \"r\", \"w\" or \"a\"");
+    }
+
+    public void interpret(Program program) {
+        interpret(program, ExecutionLimits.NONE);
+    }
+
+    public void interpret(Program program, ExecutionLimits limits) {
+        startRun(limits);
+        resolve(program);
+        try {
+            for (var stmt : program.statements()) {
                 execute(stmt);
             }
         } catch (RuntimeError e) {
-            Lox.runtimeError(e);
+            out.flush();
+            reporter.runtimeError(e);
+        } finally {
+            endRun();
+        }
+    }
+
+    /**
+     * Stops the current run, and any tasks it spawned, at their next safepoint; between runs, stops the next run
+     * at its first safepoint. Safe to call from any thread.
+     */
+    public void interrupt() {
+        // the flag is set before the budget is read and startRun replaces the budget before reading the flag,
+        // so a run starting meanwhile sees one or the other
+        interruptPending = true;
+        budget.interrupt();
+    }
+
+    private void startRun(ExecutionLimits limits) {
+        var next = new ExecutionBudget(limits);
+        budget = next;
+        if (interruptPending) {
+            next.interrupt();
+        }
+        ticks = 0;
+    }
+
+    // the run has seen any interrupt made while it was in progress, whether or not it got to a safepoint after it
+    private void endRun() {
+        interruptPending = false;
+    }
+
+    // called at loop back-edges and calls
+    void safepoint(Token location) {
+        if (--ticks <= 0) {
+            ticks = budget.acquire(location);
         }
     }
 
     public void evaluteAndPrint(Expr expression) {
+        startRun(ExecutionLimits.NONE);
         try {
             var result = eval(expression);
-            System.out.println(stringify(result));
+            out.println(stringify(result));
         } catch (RuntimeError e) {
-            Lox.runtimeError(e);
+            out.flush();
+            reporter.runtimeError(e);
+        } finally {
+            endRun();
         }
     }
 
     @Override
     public Object visit(Expr.Assign expr) {
-        var val = eval(expr.value());
+        return assign(expr, eval(expr.value()));
+    }
 
-        var distance = resolutions.get(expr);
-        if (distance != null) {
-            env.assignAt(distance, expr.name(), val);
+    Object assign(Expr.Assign expr, Object val) {
+        int slot = slot(expr, expr.name());
+        if (slot >= 0) {
+            env.assignAt(slot, expr.name(), val);
         } else {
-            globals.assign(expr.name(), val);
+            cell(slot, expr.name()).set(expr.name(), val);
         }
 
         return val;
@@ -74,7 +241,10 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     public Object visit(Expr.Binary expr) {
         var left = eval(expr.left());
         var right = eval(expr.right());
+        return binary(expr, left, right);
+    }
 
+    Object binary(Expr.Binary expr, Object left, Object right) {
         return switch (expr.operator().type) {
             case PLUS -> {
                 if (left instanceof Double l && right instanceof Double r) {
@@ -138,8 +308,10 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visit(Expr.Unary expr) {
-        var right = eval(expr.right());
+        return unary(expr, eval(expr.right()));
+    }
 
+    Object unary(Expr.Unary expr, Object right) {
         return switch (expr.operator().type) {
             case MINUS -> {
                 checkNumberOperand(expr.operator(), right);
@@ -164,48 +336,132 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Object visit(Expr.Call expr) {
         var target = eval(expr.target());
-        var args = new ArrayList<>();
+        if (target instanceof BoundNative bound) {
+            return callBound(expr, bound);
+        }
+
+        var args = new ArrayList<Object>();
 
         for (var arg : expr.args()) {
             args.add(eval(arg));
         }
 
+        return invoke(expr, callee(expr, target, args), args);
+    }
+
+    /**
+     * Checks that {@code target} can be called with {@code args} and passes the call's safepoint.
+     */
+    LoxCallable callee(Expr.Call expr, Object target, List<Object> args) {
         if (!(target instanceof LoxCallable callable)) {
             throw new RuntimeError(expr.paren(), "Can only call functions and classes");
         }
 
         if (callable.arity() != args.size()) {
-            throw new RuntimeError(expr.paren(), String.format("Wrong number of arguments: %d, required: %d", args.size(), callable.arity()));
+            throw arityError(expr, args.size(), callable.arity());
         }
 
-        return callable.call(this, args);
+        safepoint(expr.paren());
+        return callable;
+    }
+
+    private static RuntimeError arityError(Expr.Call expr, int given, int required) {
+        return new RuntimeError(expr.paren(), String.format("Wrong number of arguments: %d, required: %d", given, required));
+    }
+
+    // module natives take an argument array, skipping the list and the LoxCallable call
+    private Object callBound(Expr.Call expr, BoundNative bound) {
+        var args = new Object[expr.args().size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = eval(expr.args().get(i));
+        }
+        return invokeBound(expr, bound, args);
+    }
+
+    Object invokeBound(Expr.Call expr, BoundNative bound, Object[] args) {
+        if (bound.arity() != args.length) {
+            throw arityError(expr, args.length, bound.arity());
+        }
+        safepoint(expr.paren());
+
+        try {
+            return bound.invoke(args);
+        } catch (RuntimeError e) {
+            if (e.getToken() == null) {
+                throw new RuntimeError(expr.paren(), e.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    Object invoke(Expr.Call expr, LoxCallable callable, List<Object> args) {
+        try {
+            return callable.call(this, args);
+        } catch (RuntimeError e) {
+            if (e.getToken() == null) {
+                throw new RuntimeError(expr.paren(), e.getMessage());
+            }
+            throw e;
+        }
     }
 
     @Override
     public Object visit(Expr.Function expr) {
-        return new LoxFunction(null, expr, env, false);
+        return function(null, expr, false);
     }
 
     @Override
     public Object visit(Expr.Get expr) {
-        var object = eval(expr.target());
-        if (!(object instanceof LoxInstance inst)) {
-            throw new RuntimeError(expr.name(), "Only instances have properties");
+        return getProperty(expr, eval(expr.target()));
+    }
+
+    Object getProperty(Expr.Get expr, Object object) {
+        if (object instanceof LoxInstance inst) {
+            return inst.get(expr.name());
+        }
+        if (object instanceof LoxObject obj) {
+            return obj.get(expr.name());
         }
 
-        return inst.get(expr.name());
+        throw new RuntimeError(expr.name(), "Only instances have properties");
     }
 
     @Override
     public Object visit(Expr.Set expr) {
-        var object = eval(expr.target());
+        var inst = instance(expr, eval(expr.target()));
+        var value = eval(expr.value());
+        inst.set(expr.name(), value);
+        return null;
+    }
+
+    LoxInstance instance(Expr.Set expr, Object object) {
         if (!(object instanceof LoxInstance inst)) {
             throw new RuntimeError(expr.name(), "Only instances have properties");
         }
+        return inst;
+    }
+
+    @Override
+    public Object visit(Expr.Index expr) {
+        var target = eval(expr.target());
+        var index = eval(expr.index());
+        return indexable(expr.bracket(), target).getIndex(expr.bracket(), index);
+    }
 
+    @Override
+    public Object visit(Expr.SetIndex expr) {
+        var indexable = indexable(expr.bracket(), eval(expr.target()));
+        var index = eval(expr.index());
         var value = eval(expr.value());
-        inst.set(expr.name(), value);
-        return null;
+        indexable.setIndex(expr.bracket(), index, value);
+        return value;
+    }
+
+    LoxIndexable indexable(Token bracket, Object target) {
+        if (!(target instanceof LoxIndexable indexable)) {
+            throw new RuntimeError(bracket, "Only arrays and maps can be indexed");
+        }
+        return indexable;
     }
 
     @Override
@@ -215,7 +471,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visit(Expr.Super expr) {
-        var depth = resolutions.get(expr);
+        int depth = slots.get(expr);
         var superclass = (LoxClass) env.getAt(depth, "super");
         var method = superclass.findMethod(expr.method().lexeme);
 
@@ -227,11 +483,61 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return method.bind(object);
     }
 
-    private Object eval(Expr expr) {
-        return expr.accept(this);
+    // reads and writes the variable through the assignment's resolution, which is the variable's too
+    @Override
+    public Object visit(Expr.Increment expr) {
+        var original = expr.original();
+        var name = original.name();
+        int slot = slot(original, name);
+        if (slot >= 0) {
+            var scope = env.ancestor(slot);
+            var value = increment(expr, scope.getValue(name));
+            scope.assign(name, value);
+            return value;
+        }
+
+        var cell = cell(slot, name);
+        var value = increment(expr, cell.get(name));
+        cell.set(name, value);
+        return value;
+    }
+
+    private Object increment(Expr.Increment expr, Object current) {
+        if (current instanceof Double d) {
+            return d + expr.delta();
+        }
+        var operation = (Expr.Binary) expr.original().value();
+        return binary(operation, current, eval(operation.right()));
+    }
+
+    @Override
+    public Object visit(Expr.CompareConstant expr) {
+        var original = expr.original();
+        var value = lookUpVariable(original.left(), ((Expr.Variable) original.left()).name());
+        if (value instanceof Double d) {
+            return switch (original.operator().type) {
+                case LESS -> d < expr.constant();
+                case LESS_EQUAL -> d <= expr.constant();
+                case GREATER -> d > expr.constant();
+                default -> d >= expr.constant();
+            };
+        }
+        return binary(original, value, eval(original.right()));
+    }
+
+    @Override
+    public Object visit(Expr.CompoundAssign expr) {
+        var original = expr.original();
+        var operation = (Expr.Binary) original.value();
+        var current = lookUpVariable(operation.left(), original.name());
+        return assign(original, binary(operation, current, eval(operation.right())));
     }
 
-    private boolean isTruthy(Object val) {
+    Object eval(Expr expr) {
+        return switchDispatch ? Expr.dispatch(expr, this) : expr.accept(this);
+    }
+
+    static boolean isTruthy(Object val) {
         if (val == null) return false;
         if (val instanceof Boolean b) return b;
         return true;
@@ -251,7 +557,21 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(operator, "Operands should be numbers");
     }
 
-    private String stringify(Object val) {
+    private static int toInt(Object val, String what) {
+        if (val instanceof Double d && d == Math.rint(d)) {
+            return d.intValue();
+        }
+        throw new RuntimeError(what + " should be an integer");
+    }
+
+    private static LoxChannel toChannel(Object val) {
+        if (val instanceof LoxChannel channel) {
+            return channel;
+        }
+        throw new RuntimeError("Expected a channel");
+    }
+
+    static String stringify(Object val) {
         if (val == null) return "nil";
 
         if (val instanceof Double) {
@@ -291,11 +611,14 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visit(Stmt.Print stmt) {
-        var val = eval(stmt.expr());
-        System.out.println(stringify(val));
+        print(eval(stmt.expr()));
         return null;
     }
 
+    void print(Object val) {
+        out.println(stringify(val));
+    }
+
     @Override
     public Void visit(Stmt.If stmt) {
         if (isTruthy(eval(stmt.condition()))) {
@@ -311,6 +634,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         try {
             while(isTruthy(eval(stmt.condition()))) {
                 execute(stmt.body());
+                safepoint(stmt.keyword());
             }
         } catch (Break ignored) {}
         return null;
@@ -318,7 +642,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visit(Stmt.Function stmt) {
-        globals.define(stmt.name().lexeme, new LoxFunction(stmt.name().lexeme, stmt.function(), env, false));
+        env.define(stmt.name().lexeme, function(stmt.name().lexeme, stmt.function(), false));
         return null;
     }
 
@@ -343,7 +667,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
         var functions = new HashMap<String, LoxFunction>();
         for (var method : stmt.methods()) {
-            var fn = new LoxFunction(method.name().lexeme, method.function(), env, method.name().lexeme.equals("init"));
+            var fn = function(method.name().lexeme, method.function(), method.name().lexeme.equals("init"));
             functions.put(method.name().lexeme, fn);
         }
 
@@ -356,6 +680,11 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    // a function closing over the current environment
+    LoxFunction function(String name, Expr.Function function, boolean isInitializer) {
+        return new LoxFunction(name, function, env, isInitializer);
+    }
+
     @Override
     public Void visit(Stmt.Break stmt) {
         throw new Break();
@@ -371,13 +700,29 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new Return(value);
     }
 
-    public void resolve(Expr expr, int level) {
-        resolutions.put(expr, level);
+    void undefine(String name) {
+        globals.undefine(name);
+    }
+
+    /**
+     * Takes in the resolutions of a program, giving its globals indexes of this interpreter's.
+     */
+    public void resolve(Program program) {
+        var globals = program.globals();
+        var indexes = new int[globals.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = globalIndex(globals.get(i));
+        }
+        program.locals().forEach((expr, slot) -> slots.put(expr, slot >= 0 ? slot : -1 - indexes[-1 - slot]));
     }
 
 
-    private void execute(Stmt statement) {
-        statement.accept(this);
+    void execute(Stmt statement) {
+        if (switchDispatch) {
+            Stmt.dispatch(statement, this);
+        } else {
+            statement.accept(this);
+        }
     }
 
     public void executeBlock(Stmt.Block blockStmt, Environment environment) {
@@ -396,11 +741,56 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
     }
 
-    private Object lookUpVariable(Expr variable, Token name) {
-        var depth = resolutions.get(variable);
-        if (depth != null) {
-            return env.getAt(depth, name);
+    // scope depth of a resolved local, or null for a global
+    Integer depth(Expr expr) {
+        return slots.get(expr) instanceof Integer depth && depth >= 0 ? depth : null;
+    }
+
+    GlobalCell globalCell(String name) {
+        return globals.cell(name);
+    }
+
+    Object lookUpVariable(Expr variable, Token name) {
+        int slot = slot(variable, name);
+        if (slot >= 0) {
+            return env.getAt(slot, name);
+        }
+        return cell(slot, name).get(name);
+    }
+
+    // the resolution of a use site; sites that weren't resolved, such as those of the debugger's expressions, are
+    // globals and get an index on first use
+    private int slot(Expr expr, Token name) {
+        var slot = slots.get(expr);
+        if (slot != null) {
+            return slot;
+        }
+        return -1 - globalIndex(name.lexeme);
+    }
+
+    // indexes are handed out under the lock, so names resolved by two threads at once don't share one
+    private int globalIndex(String name) {
+        var index = globalIndexes.get(name);
+        if (index != null) {
+            return index;
+        }
+        synchronized (globalIndexes) {
+            return globalIndexes.computeIfAbsent(name, key -> globalIndexes.size());
+        }
+    }
+
+    private GlobalCell cell(int slot, Token name) {
+        int index = -1 - slot;
+        var cells = this.cells;
+        if (index < cells.length && cells[index] != null) {
+            return cells[index];
+        }
+        if (index >= cells.length) {
+            cells = Arrays.copyOf(cells, Math.max(index + 1, cells.length * 2));
+            this.cells = cells;
         }
-        return globals.getValue(name);
+        var cell = globals.cell(name.lexeme);
+        cells[index] = cell;
+        return cell;
     }
 }
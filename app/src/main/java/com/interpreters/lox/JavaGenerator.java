@@ -0,0 +1,728 @@
+package com.interpreters.lox;
+
+import com.interpreters.lox.runtime.Natives;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Translates a resolved program into the source of a Java class for {@link Jloxc}, running on the library in
+ * {@code com.interpreters.lox.runtime}.
+ * <ul>
+ *     <li>Top-level functions become static methods. Calls to a global function that is declared once and never
+ *     assigned call its method directly.</li>
+ *     <li>Other functions and methods become lambdas, created where the declaration runs.</li>
+ *     <li>Globals become static fields. Locals become Java locals, or {@link com.interpreters.lox.runtime.Cell}s
+ *     when a nested function captures them.</li>
+ *     <li>Operators become calls to {@link com.interpreters.lox.runtime.Ops}; conditions are computed as Java
+ *     booleans.</li>
+ * </ul>
+ * Variables are resolved again here rather than through the program's resolutions, since declarations have
+ * to be matched with their uses to find the captured ones.
+ */
+final class JavaGenerator {
+    // keeps every method well below the JVM's 64K limit on its code, and every class below 64K constants
+    private static final int STATEMENTS_PER_PART = 100;
+    private static final int FIELDS_PER_METHOD = 1000;
+    // natives of the interpreter that compiled programs don't have
+    private static final Set<String> INTERPRETER_ONLY = Set.of(
+            "bench", "memo", "readLine", "open", "spawn", "await", "channel", "send", "receive",
+            "close");
+
+    private final ErrorReporter reporter;
+
+    // a local variable, named by its declaring token
+    private static final class Local {
+        final String name;
+        final int functionDepth;
+        boolean captured;
+
+        Local(String name, int functionDepth) {
+            this.name = name;
+            this.functionDepth = functionDepth;
+        }
+    }
+
+    private final Map<Token, Local> declarations = new IdentityHashMap<>();
+    private final Map<Expr, Local> uses = new IdentityHashMap<>();
+    // first use or declaration of every global
+    private final Map<String, Token> globals = new LinkedHashMap<>();
+    private final Map<String, Integer> globalDeclarations = new HashMap<>();
+    private final Set<String> assignedGlobals = new HashSet<>();
+    // qualified name of the static method of each top-level function
+    private final Map<Stmt.Function, String> staticMethods = new IdentityHashMap<>();
+    // global functions that calls can go to directly
+    private final Map<String, Stmt.Function> fixedFunctions = new HashMap<>();
+    private int ids;
+
+    // analysis
+    private final Deque<Map<String, Local>> scopes = new ArrayDeque<>();
+    private int functionDepth;
+    private int part;
+
+    // the Java method being written
+    private static final class Method {
+        // the instance parameter and the local holding the superclass inside methods
+        final String self;
+        final String superclass;
+        final List<String> temps = new ArrayList<>();
+        int loops;
+
+        Method(String self, String superclass) {
+            this.self = self;
+            this.superclass = superclass;
+        }
+    }
+
+    private Method method;
+    private StringBuilder out;
+    private int indent;
+    private int line;
+    // constants and static methods of the part being written
+    private final Map<Double, String> constants = new LinkedHashMap<>();
+    private final StringBuilder methods = new StringBuilder();
+
+    private JavaGenerator(ErrorReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    /**
+     * The source of class {@code className}, in the unnamed package, with a {@code main} running the program.
+     * Constructs compiled programs can't run are reported to {@code reporter}.
+     */
+    static String generate(Program program, String className, ErrorReporter reporter) {
+        return new JavaGenerator(reporter).program(program.statements(), className);
+    }
+
+    private String program(List<Stmt> statements, String className) {
+        for (int i = 0; i < statements.size(); i++) {
+            part = i / STATEMENTS_PER_PART;
+            analyze(statements.get(i));
+        }
+        for (var global : globals.entrySet()) {
+            if (INTERPRETER_ONLY.contains(global.getKey()) && !globalDeclarations.containsKey(global.getKey())) {
+                reporter.error(global.getValue(), "'%s' isn't available in compiled programs".formatted(global.getKey()));
+            }
+        }
+        for (var name : new ArrayList<>(fixedFunctions.keySet())) {
+            if (globalDeclarations.get(name) != 1 || assignedGlobals.contains(name) || Natives.exists(name)) {
+                fixedFunctions.remove(name);
+            }
+        }
+
+        // top-level code and functions go into nested classes, each of which has its own constant pool
+        var parts = new StringBuilder();
+        var run = new StringBuilder();
+        for (int i = 0; i * STATEMENTS_PER_PART < statements.size(); i++) {
+            var chunk = statements.subList(i * STATEMENTS_PER_PART,
+                    Math.min((i + 1) * STATEMENTS_PER_PART, statements.size()));
+            constants.clear();
+            methods.setLength(0);
+            var body = method("static void run()", chunk, null, null, List.of(), false);
+
+            parts.append("\n    private static final class Part$").append(i).append(" {\n");
+            for (var constant : constants.entrySet()) {
+                parts.append("        private static final Object ").append(constant.getValue())
+                        .append(" = ").append(constant.getKey()).append(";\n");
+            }
+            parts.append(body).append(methods).append("    }\n");
+            run.append("        Part$").append(i).append(".run();\n");
+        }
+
+        // globals are set in methods of their own rather than in the static initializer, which large programs
+        // would take over the size limit
+        var source = new StringBuilder();
+        source.append("import com.interpreters.lox.runtime.*;\n\n");
+        source.append("public final class ").append(className).append(" {\n");
+        var names = new ArrayList<>(globals.keySet());
+        for (var global : names) {
+            source.append("    private static Object g$").append(global).append(";\n");
+        }
+        source.append("\n    static {\n");
+        for (int i = 0; i * FIELDS_PER_METHOD < names.size(); i++) {
+            source.append("        init$").append(i).append("();\n");
+        }
+        source.append("    }\n");
+        for (int i = 0; i * FIELDS_PER_METHOD < names.size(); i++) {
+            source.append("\n    private static void init$").append(i).append("() {\n");
+            for (var global : names.subList(i * FIELDS_PER_METHOD, Math.min((i + 1) * FIELDS_PER_METHOD, names.size()))) {
+                var value = Natives.exists(global) ? "Natives.get(\"%s\")".formatted(global) : "Ops.UNDEFINED";
+                source.append("        g$%s = %s;\n".formatted(global, value));
+            }
+            source.append("    }\n");
+        }
+        source.append("\n    public static void main(String[] args) {\n");
+        source.append("        Ops.main(").append(className).append("::run);\n");
+        source.append("    }\n\n");
+        source.append("    private static void run() {\n").append(run).append("    }\n");
+        source.append(parts);
+        source.append("}\n");
+        return source.toString();
+    }
+
+    // analysis: matches uses of locals with their declarations, finding the ones nested functions capture
+
+    private void analyze(Stmt stmt) {
+        switch (stmt) {
+            case Stmt.Expression s -> analyze(s.expr());
+            case Stmt.Print s -> analyze(s.expr());
+            case Stmt.VarDeclaration s -> {
+                if (s.initializer() != null) analyze(s.initializer());
+                declare(s.name());
+            }
+            case Stmt.Block s -> {
+                scopes.push(new HashMap<>());
+                s.statements().forEach(this::analyze);
+                scopes.pop();
+            }
+            case Stmt.If s -> {
+                analyze(s.condition());
+                analyze(s.thenClause());
+                if (s.elseClause() != null) analyze(s.elseClause());
+            }
+            case Stmt.While s -> {
+                analyze(s.condition());
+                analyze(s.body());
+            }
+            case Stmt.Function s -> {
+                if (scopes.isEmpty()) {
+                    staticMethods.put(s, "Part$" + part + "." + s.name().lexeme + "$" + ids++);
+                    fixedFunctions.put(s.name().lexeme, s);
+                }
+                declare(s.name());
+                analyze(s.function());
+            }
+            case Stmt.Class s -> {
+                if (s.superclass() != null) analyze(s.superclass());
+                declare(s.name());
+                for (var method : s.methods()) {
+                    analyze(method.function());
+                }
+            }
+            case Stmt.Break s -> {}
+            case Stmt.Return s -> {
+                if (s.value() != null) analyze(s.value());
+            }
+        }
+    }
+
+    private void analyze(Expr expr) {
+        switch (expr) {
+            case Expr.Literal e -> {}
+            case Expr.Grouping e -> analyze(e.expression());
+            case Expr.Variable e -> resolve(e, e.name());
+            case Expr.Assign e -> {
+                analyze(e.value());
+                if (!resolve(e, e.name())) {
+                    assignedGlobals.add(e.name().lexeme);
+                }
+            }
+            case Expr.Binary e -> {
+                analyze(e.left());
+                analyze(e.right());
+            }
+            case Expr.Unary e -> analyze(e.right());
+            case Expr.Logical e -> {
+                analyze(e.left());
+                analyze(e.right());
+            }
+            case Expr.Ternary e -> {
+                analyze(e.condition());
+                analyze(e.first());
+                analyze(e.second());
+            }
+            case Expr.Call e -> {
+                analyze(e.target());
+                e.args().forEach(this::analyze);
+            }
+            case Expr.Function e -> {
+                functionDepth++;
+                scopes.push(new HashMap<>());
+                e.params().forEach(this::declare);
+                e.body().forEach(this::analyze);
+                scopes.pop();
+                functionDepth--;
+            }
+            case Expr.Get e -> analyze(e.target());
+            case Expr.Set e -> {
+                analyze(e.target());
+                analyze(e.value());
+            }
+            case Expr.Index e -> {
+                analyze(e.target());
+                analyze(e.index());
+            }
+            case Expr.SetIndex e -> {
+                analyze(e.target());
+                analyze(e.index());
+                analyze(e.value());
+            }
+            case Expr.This e -> {}
+            case Expr.Super e -> {}
+            case Expr.Increment e -> analyze(e.original());
+            case Expr.CompareConstant e -> analyze(e.original());
+            case Expr.CompoundAssign e -> analyze(e.original());
+        }
+    }
+
+    private void declare(Token name) {
+        if (scopes.isEmpty()) {
+            globals.putIfAbsent(name.lexeme, name);
+            globalDeclarations.merge(name.lexeme, 1, Integer::sum);
+            return;
+        }
+        var local = new Local(name.lexeme + "$" + ids++, functionDepth);
+        scopes.peek().put(name.lexeme, local);
+        declarations.put(name, local);
+    }
+
+    // whether the name is a local
+    private boolean resolve(Expr expr, Token name) {
+        for (var scope : scopes) {
+            var local = scope.get(name.lexeme);
+            if (local != null) {
+                if (local.functionDepth < functionDepth) {
+                    local.captured = true;
+                }
+                uses.put(expr, local);
+                return true;
+            }
+        }
+        globals.putIfAbsent(name.lexeme, name);
+        return false;
+    }
+
+    // statements
+
+    /**
+     * A method running {@code statements}, taking {@code params} as Java parameters.
+     */
+    private String method(String signature, List<Stmt> statements, String self, String superclass,
+                          List<Token> params, boolean returnsValue) {
+        var body = body(statements, self, superclass, params, i -> parameterName(params.get(i)), returnsValue, 3);
+        var declarations = new ArrayList<String>();
+        for (var param : params) {
+            declarations.add("Object " + parameterName(param));
+        }
+        var open = signature.endsWith(")") && !params.isEmpty()
+                ? signature.substring(0, signature.length() - 1) + String.join(", ", declarations) + ")"
+                : signature;
+        return "\n        " + open + " {\n" + body + "        }\n";
+    }
+
+    // captured parameters are copied into a cell
+    private String parameterName(Token param) {
+        var local = declarations.get(param);
+        return local.captured ? local.name + "$" : local.name;
+    }
+
+    /**
+     * The statements of a function or of top-level code, indented by {@code depth} levels.
+     */
+    private String body(List<Stmt> statements, String self, String superclass, List<Token> params,
+                        IntFunction<String> argument, boolean returnsValue, int depth) {
+        var enclosing = method;
+        var enclosingOut = out;
+        var enclosingIndent = indent;
+        method = new Method(self, superclass);
+        out = new StringBuilder();
+        indent = depth;
+        try {
+            for (int i = 0; i < params.size(); i++) {
+                var local = declarations.get(params.get(i));
+                var value = argument.apply(i);
+                if (local.captured) {
+                    line("final Cell %s = new Cell(%s);".formatted(local.name, value));
+                } else if (!local.name.equals(value)) {
+                    line("Object %s = %s;".formatted(local.name, value));
+                }
+            }
+            if (sequence(statements) && returnsValue) {
+                line("return null;");
+            }
+
+            var temps = new StringBuilder();
+            for (var temp : method.temps) {
+                temps.append("    ".repeat(depth)).append("Object ").append(temp).append(" = null;\n");
+            }
+            return temps.append(out).toString();
+        } finally {
+            method = enclosing;
+            out = enclosingOut;
+            indent = enclosingIndent;
+        }
+    }
+
+    // whether the statements can complete normally; like javac, stops at the first one that can't
+    private boolean sequence(List<Stmt> statements) {
+        for (var stmt : statements) {
+            if (!statement(stmt)) return false;
+        }
+        return true;
+    }
+
+    private boolean statement(Stmt stmt) {
+        switch (stmt) {
+            case Stmt.Expression s -> line(expressionStatement(s.expr()));
+            case Stmt.Print s -> line("Ops.print(%s);".formatted(expression(s.expr())));
+            case Stmt.VarDeclaration s -> declareVariable(s.name(), s.initializer() != null ? expression(s.initializer()) : "null");
+            case Stmt.Block s -> {
+                line("{");
+                indent++;
+                boolean completes = sequence(s.statements());
+                indent--;
+                line("}");
+                return completes;
+            }
+            case Stmt.If s -> {
+                line("if (%s) {".formatted(condition(s.condition())));
+                indent++;
+                boolean thenCompletes = statement(s.thenClause());
+                indent--;
+                if (s.elseClause() == null) {
+                    line("}");
+                    return true;
+                }
+                line("} else {");
+                indent++;
+                boolean elseCompletes = statement(s.elseClause());
+                indent--;
+                line("}");
+                return thenCompletes || elseCompletes;
+            }
+            case Stmt.While s -> {
+                line = s.keyword().line;
+                line("while (%s) {".formatted(condition(s.condition())));
+                method.loops++;
+                indent++;
+                statement(s.body());
+                indent--;
+                method.loops--;
+                line("}");
+            }
+            case Stmt.Function s -> function(s);
+            case Stmt.Class s -> klass(s);
+            case Stmt.Break s -> {
+                if (method.loops == 0) {
+                    reporter.error(line, "Can't break outside of a loop");
+                    return true;
+                }
+                line("break;");
+                return false;
+            }
+            case Stmt.Return s -> {
+                line("return %s;".formatted(s.value() != null ? expression(s.value()) : "null"));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void function(Stmt.Function stmt) {
+        var function = stmt.function();
+        var name = stmt.name().lexeme;
+        var staticMethod = staticMethods.get(stmt);
+        if (staticMethod == null) {
+            declareVariable(stmt.name(), "null");
+            line(assignment(stmt.name(), stmt.name(), functionValue(name, function)) + ";");
+            return;
+        }
+
+        var enclosingLine = line;
+        var methodName = staticMethod.substring(staticMethod.indexOf('.') + 1);
+        methods.append(method("static Object " + methodName + "()", function.body(), null, null, function.params(), true));
+        line = enclosingLine;
+
+        var args = "a$" + ids++;
+        var forwarded = new ArrayList<String>();
+        for (int i = 0; i < function.params().size(); i++) {
+            forwarded.add(args + "[" + i + "]");
+        }
+        line("g$%s = new LoxFunction(\"%s\", %d, %s -> %s(%s));".formatted(
+                name, name, function.params().size(), args, staticMethod, String.join(", ", forwarded)));
+    }
+
+    // name is null for lambdas
+    private String functionValue(String name, Expr.Function function) {
+        var args = "a$" + ids++;
+        var body = body(function.body(), method.self, method.superclass, function.params(),
+                i -> args + "[" + i + "]", true, indent + 1);
+        return "new LoxFunction(%s, %d, %s -> {\n%s%s})".formatted(
+                name != null ? "\"" + name + "\"" : "null", function.params().size(), args, body, "    ".repeat(indent));
+    }
+
+    private void klass(Stmt.Class stmt) {
+        String superclass = null;
+        if (stmt.superclass() != null) {
+            superclass = "super$" + ids++;
+            line("final LoxClass %s = Ops.superclass(%s, %d);".formatted(
+                    superclass, expression(stmt.superclass()), stmt.superclass().name().line));
+        }
+        declareVariable(stmt.name(), "null");
+
+        var methodsMap = "m$" + ids++;
+        line("java.util.Map<String, LoxMethod> %s = new java.util.HashMap<>();".formatted(methodsMap));
+        for (var declaration : stmt.methods()) {
+            var function = declaration.function();
+            var name = declaration.name().lexeme;
+            var self = "self$" + ids++;
+            var args = "a$" + ids++;
+            var body = body(function.body(), self, superclass, function.params(),
+                    i -> args + "[" + i + "]", true, indent + 1);
+            line("%s.put(\"%s\", new LoxMethod(\"%s\", %d, %b, (%s, %s) -> {\n%s%s}));".formatted(
+                    methodsMap, name, name, function.params().size(), name.equals("init"), self, args, body,
+                    "    ".repeat(indent)));
+        }
+
+        var value = "new LoxClass(\"%s\", %s, %s)".formatted(stmt.name().lexeme, superclass, methodsMap);
+        line(assignment(stmt.name(), stmt.name(), value) + ";");
+    }
+
+    private void declareVariable(Token name, String value) {
+        line = name.line;
+        var local = declarations.get(name);
+        if (local == null) {
+            line("g$%s = %s;".formatted(name.lexeme, value));
+        } else if (local.captured) {
+            line("final Cell %s = new Cell(%s);".formatted(local.name, value));
+        } else {
+            line("Object %s = %s;".formatted(local.name, value));
+        }
+    }
+
+    private String expressionStatement(Expr expr) {
+        var unwrapped = unwrap(expr);
+        if (unwrapped instanceof Expr.Assign assign) {
+            return assignment(assign, assign.name(), expression(assign.value())) + ";";
+        }
+        var text = expression(expr);
+        // a method call can be a statement on its own
+        if (text.startsWith("Ops.") && text.endsWith(")")) {
+            return text + ";";
+        }
+        return "Ops.discard(%s);".formatted(text);
+    }
+
+    // the node that runs for a fused one
+    private static Expr unwrap(Expr expr) {
+        return switch (expr) {
+            case Expr.Increment e -> e.original();
+            case Expr.CompoundAssign e -> e.original();
+            case Expr.CompareConstant e -> e.original();
+            case Expr.Grouping e -> unwrap(e.expression());
+            default -> expr;
+        };
+    }
+
+    // expressions
+
+    private String expression(Expr expr) {
+        return switch (expr) {
+            case Expr.Literal e -> literal(e.value());
+            case Expr.Grouping e -> expression(e.expression());
+            case Expr.Variable e -> variable(e, e.name());
+            case Expr.This e -> method.self;
+            case Expr.Assign e -> "(" + assignment(e, e.name(), expression(e.value())) + ")";
+            case Expr.Binary e -> binary(e);
+            case Expr.Unary e -> {
+                line = e.operator().line;
+                yield e.operator().type == TokenType.BANG
+                        ? "!" + condition(e.right())
+                        : "Ops.negate(%s, %d)".formatted(expression(e.right()), e.operator().line);
+            }
+            case Expr.Logical e -> {
+                var temp = "t$" + ids++;
+                method.temps.add(temp);
+                var left = expression(e.left());
+                var right = expression(e.right());
+                yield e.operator().type == TokenType.OR
+                        ? "(Ops.truthy(%s = %s) ? %s : %s)".formatted(temp, left, temp, right)
+                        : "(Ops.truthy(%s = %s) ? %s : %s)".formatted(temp, left, right, temp);
+            }
+            case Expr.Ternary e -> "(%s ? %s : %s)".formatted(
+                    condition(e.condition()), expression(e.first()), expression(e.second()));
+            case Expr.Call e -> call(e);
+            case Expr.Function e -> functionValue(null, e);
+            case Expr.Get e -> {
+                line = e.name().line;
+                yield "Ops.get(%s, \"%s\", %d)".formatted(expression(e.target()), e.name().lexeme, e.name().line);
+            }
+            case Expr.Set e -> {
+                line = e.name().line;
+                yield "Ops.set(Ops.instance(%s, %d), \"%s\", %s)".formatted(
+                        expression(e.target()), e.name().line, e.name().lexeme, expression(e.value()));
+            }
+            case Expr.Index e -> {
+                line = e.bracket().line;
+                yield "Ops.index(%s, %s, %d)".formatted(expression(e.target()), expression(e.index()), e.bracket().line);
+            }
+            // like the interpreter, checks the target before evaluating the index
+            case Expr.SetIndex e -> {
+                line = e.bracket().line;
+                yield "Ops.setIndex(Ops.indexable(%s, %d), %s, %s, %d)".formatted(expression(e.target()),
+                        e.bracket().line, expression(e.index()), expression(e.value()), e.bracket().line);
+            }
+            case Expr.Super e -> {
+                line = e.method().line;
+                yield "Ops.superMethod(%s, \"%s\", %s, %d)".formatted(
+                        method.superclass, e.method().lexeme, method.self, e.method().line);
+            }
+            case Expr.Increment e -> expression(e.original());
+            case Expr.CompareConstant e -> expression(e.original());
+            case Expr.CompoundAssign e -> expression(e.original());
+        };
+    }
+
+    /**
+     * A Java boolean expression for the truthiness of {@code expr}, without boxing comparisons.
+     */
+    private String condition(Expr expr) {
+        return switch (expr) {
+            case Expr.Grouping e -> condition(e.expression());
+            case Expr.CompareConstant e -> condition(e.original());
+            case Expr.Binary e when e.operator().type == TokenType.BANG_EQUAL ->
+                    "!Ops.equal(%s, %s)".formatted(expression(e.left()), expression(e.right()));
+            case Expr.Binary e when isComparison(e.operator().type) -> binary(e);
+            case Expr.Logical e -> "(%s %s %s)".formatted(
+                    condition(e.left()), e.operator().type == TokenType.OR ? "||" : "&&", condition(e.right()));
+            case Expr.Unary e when e.operator().type == TokenType.BANG -> "!" + condition(e.right());
+            default -> "Ops.truthy(%s)".formatted(expression(expr));
+        };
+    }
+
+    private static boolean isComparison(TokenType type) {
+        return switch (type) {
+            case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL, EQUAL_EQUAL -> true;
+            default -> false;
+        };
+    }
+
+    private String literal(Object value) {
+        return switch (value) {
+            case null -> "null";
+            case Boolean b -> b ? "Boolean.TRUE" : "Boolean.FALSE";
+            case Double d -> constants.computeIfAbsent(d, k -> "k$" + ids++);
+            case String s -> stringLiteral(s);
+            default -> throw new IllegalArgumentException("Unexpected literal " + value);
+        };
+    }
+
+    private static String stringLiteral(String value) {
+        var literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> literal.append("\\\"");
+                case '\\' -> literal.append("\\\\");
+                case '\n' -> literal.append("\\n");
+                case '\r' -> literal.append("\\r");
+                case '\t' -> literal.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        literal.append("\\%03o".formatted((int) c));
+                    } else {
+                        literal.append(c);
+                    }
+                }
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private String variable(Expr expr, Token name) {
+        line = name.line;
+        var local = uses.get(expr);
+        if (local == null) {
+            return "Ops.global(g$%s, \"%s\", %d)".formatted(name.lexeme, name.lexeme, name.line);
+        }
+        return local.captured ? local.name + ".value" : local.name;
+    }
+
+    // an assignment to the variable the node refers to, or for declarations the one its token declares
+    private String assignment(Object node, Token name, String value) {
+        line = name.line;
+        var local = node instanceof Expr expr ? uses.get(expr) : declarations.get(name);
+        if (local == null && !(node instanceof Expr)) {
+            return "g$%s = %s".formatted(name.lexeme, value);
+        }
+        if (local == null) {
+            return "g$%s = Ops.assign(g$%s, %s, \"%s\", %d)".formatted(
+                    name.lexeme, name.lexeme, value, name.lexeme, name.line);
+        }
+        return local.captured ? "%s.value = %s".formatted(local.name, value) : "%s = %s".formatted(local.name, value);
+    }
+
+    private String binary(Expr.Binary expr) {
+        var left = expression(expr.left());
+        var right = expression(expr.right());
+        int line = expr.operator().line;
+        this.line = line;
+        var operation = switch (expr.operator().type) {
+            case PLUS -> "add";
+            case MINUS -> "subtract";
+            case STAR -> "multiply";
+            case SLASH -> "divide";
+            case GREATER -> "greater";
+            case GREATER_EQUAL -> "greaterEqual";
+            case LESS -> "less";
+            case LESS_EQUAL -> "lessEqual";
+            case EQUAL_EQUAL -> null;
+            case BANG_EQUAL -> null;
+            default -> throw new IllegalArgumentException("Not a binary operator: " + expr.operator().type);
+        };
+        if (operation == null) {
+            var equal = "Ops.equal(%s, %s)".formatted(left, right);
+            return expr.operator().type == TokenType.EQUAL_EQUAL ? equal : "!" + equal;
+        }
+        return "Ops.%s(%s, %s, %d)".formatted(operation, left, right, line);
+    }
+
+    private String call(Expr.Call expr) {
+        var args = new ArrayList<String>();
+        int line = expr.paren().line;
+
+        if (expr.target() instanceof Expr.Get get) {
+            var receiver = "Ops.receiver(%s, \"%s\", %d)".formatted(
+                    expression(get.target()), get.name().lexeme, get.name().line);
+            expr.args().forEach(arg -> args.add(expression(arg)));
+            this.line = line;
+            return "Ops.invoke(%s, \"%s\", %d%s)".formatted(receiver, get.name().lexeme, line, arguments(args));
+        }
+
+        if (expr.target() instanceof Expr.Variable variable && !uses.containsKey(variable)) {
+            var function = fixedFunctions.get(variable.name().lexeme);
+            if (function != null && function.function().params().size() == expr.args().size()) {
+                var name = variable.name().lexeme;
+                expr.args().forEach(arg -> args.add(expression(arg)));
+                this.line = line;
+                return "(g$%s == Ops.UNDEFINED ? Ops.undefinedCall(\"%s\", %d) : %s(%s))".formatted(
+                        name, name, variable.name().line, staticMethods.get(function), String.join(", ", args));
+            }
+        }
+
+        var callee = expression(expr.target());
+        expr.args().forEach(arg -> args.add(expression(arg)));
+        this.line = line;
+        return "Ops.call(%s, %d%s)".formatted(callee, line, arguments(args));
+    }
+
+    // a lone nil is cast, or Java would pass it as the varargs array itself
+    private static String arguments(List<String> args) {
+        if (args.size() == 1 && args.get(0).equals("null")) {
+            return ", (Object) null";
+        }
+        return args.isEmpty() ? "" : ", " + String.join(", ", args);
+    }
+
+    private void line(String text) {
+        out.append("    ".repeat(indent)).append(text).append('\n');
+    }
+}
@@ -0,0 +1,168 @@
+package com.interpreters.lox;
+
+import com.interpreters.lox.runtime.Ops;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+/**
+ * Compiles a Lox program ahead of time into a JAR that runs with {@code java -jar}: the program is translated to
+ * Java by {@link JavaGenerator}, compiled with the system Java compiler and packaged with the runtime library
+ * from {@code com.interpreters.lox.runtime}.
+ */
+public class Jloxc {
+    private static final String RUNTIME_PACKAGE = Ops.class.getPackageName();
+
+    public static void main(String[] args) throws IOException {
+        Path output = null;
+        if (args.length == 3 && args[0].equals("-o")) {
+            output = Path.of(args[1]);
+            args = new String[]{args[2]};
+        }
+        if (args.length != 1) {
+            System.out.println("Usage: jloxc [-o out.jar] file");
+            System.exit(65);
+        }
+
+        var input = Path.of(args[0]);
+        var className = className(input);
+        if (output == null) {
+            output = input.resolveSibling(baseName(input) + ".jar");
+        }
+
+        var source = Files.readString(input, StandardCharsets.UTF_8);
+        var reporter = new ErrorReporter();
+        var program = LoxRuntime.compile(source, reporter);
+        if (program == null) System.exit(64);
+
+        var java = JavaGenerator.generate(program, className, reporter);
+        if (reporter.hadError()) System.exit(64);
+
+        if (!compile(className, java, output)) System.exit(70);
+    }
+
+    private static boolean compile(String className, String java, Path output) throws IOException {
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            System.err.println("jloxc needs a JDK: no Java compiler found");
+            return false;
+        }
+
+        var work = Files.createTempDirectory("jloxc");
+        try {
+            var sourceFile = work.resolve(className + ".java");
+            Files.writeString(sourceFile, java, StandardCharsets.UTF_8);
+            var classes = Files.createDirectory(work.resolve("classes"));
+            var runtime = runtimeLocation();
+
+            int status = compiler.run(null, null, null,
+                    "--release", "21", "-encoding", "UTF-8", "-nowarn",
+                    "-classpath", runtime.toString(), "-d", classes.toString(), sourceFile.toString());
+            if (status != 0) {
+                System.err.println("jloxc: the generated Java didn't compile; it was kept in " + sourceFile);
+                work = null;
+                return false;
+            }
+
+            var manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, className);
+            try (var jar = new JarOutputStream(Files.newOutputStream(output), manifest)) {
+                addClasses(jar, classes, "");
+                addRuntime(jar, runtime);
+            }
+            return true;
+        } finally {
+            if (work != null) {
+                delete(work);
+            }
+        }
+    }
+
+    private static void addRuntime(JarOutputStream jar, Path runtime) throws IOException {
+        var packagePath = RUNTIME_PACKAGE.replace('.', '/');
+        if (Files.isDirectory(runtime)) {
+            addClasses(jar, runtime.resolve(packagePath), packagePath + "/");
+            return;
+        }
+        try (var fileSystem = FileSystems.newFileSystem(runtime)) {
+            addClasses(jar, fileSystem.getPath(packagePath), packagePath + "/");
+        }
+    }
+
+    // the class files directly in directory, under prefix in the jar
+    private static void addClasses(JarOutputStream jar, Path directory, String prefix) throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = new ArrayList<>(list.filter(file -> file.toString().endsWith(".class")).sorted().toList());
+        }
+        for (var file : files) {
+            jar.putNextEntry(new JarEntry(prefix + file.getFileName()));
+            copy(file, jar);
+            jar.closeEntry();
+        }
+    }
+
+    private static void copy(Path file, OutputStream out) throws IOException {
+        try (var in = Files.newInputStream(file)) {
+            in.transferTo(out);
+        }
+    }
+
+    // the directory or jar the runtime classes are loaded from
+    private static Path runtimeLocation() {
+        try {
+            return Path.of(Ops.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Can't locate the runtime classes", e);
+        }
+    }
+
+    private static String baseName(Path input) {
+        var name = input.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    // the file name as a Java identifier starting with a capital, not shadowing a runtime class
+    private static String className(Path input) {
+        var name = new StringBuilder();
+        for (char c : baseName(input).toCharArray()) {
+            name.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        if (name.isEmpty() || !Character.isJavaIdentifierStart(name.charAt(0))) {
+            name.insert(0, "Lox");
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+
+        try {
+            Class.forName(RUNTIME_PACKAGE + "." + name);
+            name.append("Program");
+        } catch (ClassNotFoundException e) {
+            // free to use
+        }
+        return name.toString();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (var files = Files.walk(directory)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -1,125 +1,75 @@
 package com.interpreters.lox;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
 
 public class Lox {
-    private static boolean hadError;
-    private static boolean hadRuntimeError;
 
-    private static Interpreter interpreter = new Interpreter();
-
-    public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [file]");
-            System.exit(65);
-        } else if (args.length == 1) {
-            runFile(args[0]);
-            if (hadError) System.exit(64);
-            if (hadRuntimeError) System.exit(70);
-        } else {
-            runPrompt();
-        }
-    }
-
-    private static void runFile(String filename) throws IOException {
-        var bytes = Files.readAllBytes(Paths.get(filename));
-        run(new String(bytes, StandardCharsets.UTF_8));
-    }
-
-
-    private static void runPrompt() throws IOException {
-        new Terminal(line -> {
-            runRepl(line);
-            hadError = false;
-            hadRuntimeError = false;
-        }).run();
-    }
-
-    private static void run(String source) {
-        var scanner = new Scanner(source);
-        var tokens = scanner.scan();
-
-        var parser = new Parser(tokens);
-        var statements = parser.parse();
-
-        if (hadError) {
-            return;
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length >= 1 && args[0].equals("--batch")) {
+            System.exit(BatchRunner.run(Arrays.copyOfRange(args, 1, args.length)));
         }
-
-        var resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
-
-        if (hadError) {
-            return;
+        if (args.length == 2 && args[0].equals("--watch")) {
+            WatchSession.watch(Paths.get(args[1]));
         }
 
-        interpreter.interpret(statements);
-    }
-
-    private static void runRepl(String source) {
-        var scanner = new Scanner(source);
-        var tokens = scanner.scan();
-
-        var parser = new Parser(tokens);
-
-        var endsInSemicolon = tokens.size() >= 2 && tokens.get(tokens.size() - 2).type == TokenType.SEMICOLON;
-        if (!endsInSemicolon) {
-            // insert semicolon before EOF and parse
-            assert tokens.stream().anyMatch(t -> t.type == TokenType.EOF);
-            if (tokens.size() == 1) {
-                return;
+        var engine = Engine.TREE_WALKING;
+        if (args.length >= 1 && args[0].equals("--flat")) {
+            engine = Engine.FLAT;
+            args = Arrays.copyOfRange(args, 1, args.length);
+        } else if (args.length >= 1 && args[0].equals("--closure")) {
+            engine = Engine.CLOSURE;
+            args = Arrays.copyOfRange(args, 1, args.length);
+        } else if (args.length >= 1 && args[0].equals("--switch")) {
+            engine = Engine.SWITCH;
+            args = Arrays.copyOfRange(args, 1, args.length);
+        } else if (args.length >= 1 && args[0].equals("--stackless")) {
+            engine = Engine.STACKLESS;
+            args = Arrays.copyOfRange(args, 1, args.length);
+            if (args.length >= 2 && args[0].equals("--max-depth")) {
+                engine = Engine.stackless(Integer.parseInt(args[1]));
+                args = Arrays.copyOfRange(args, 2, args.length);
             }
+        }
 
-            tokens.add(tokens.size() - 1, new Token(TokenType.SEMICOLON, ";", null, 1));
-            var statements = parser.parse();
-
-            if (hadError) {
-                return;
-            }
-
-            assert statements.size() == 1;
-            var stmt = statements.get(0);
-
-            if (stmt instanceof Stmt.Expression) {
-                interpreter.evaluteAndPrint(((Stmt.Expression) stmt).expr());
+        long maxSteps = 0;
+        Duration timeout = null;
+        while (args.length >= 2 && (args[0].equals("--max-steps") || args[0].equals("--timeout"))) {
+            if (args[0].equals("--max-steps")) {
+                maxSteps = Long.parseLong(args[1]);
             } else {
-                interpreter.interpret(statements);
+                timeout = Duration.ofMillis(Long.parseLong(args[1]));
             }
-        } else {
-            var statements = parser.parse();
-
-            if (hadError) {
-                return;
-            }
-
-            interpreter.interpret(statements);
+            args = Arrays.copyOfRange(args, 2, args.length);
         }
-    }
-
+        var limits = new ExecutionLimits(maxSteps, timeout);
 
-    public static void error(int line, String error) {
-        report(line, "", error);
-    }
-
-    public static void error(Token token, String error) {
-        if (token.type == TokenType.EOF) {
-            report(token.line, "at end", error);
+        var runtime = new LoxRuntime(engine);
+        // limits are per run, and the REPL doesn't have one
+        boolean limited = limits.hasStepLimit() || limits.hasTimeout();
+        if (args.length > 1 || (args.length == 0 && limited)) {
+            System.out.println("Usage: jlox [--flat | --closure | --switch | --stackless [--max-depth n]] [--max-steps n] [--timeout ms] [file] | jlox --watch file | jlox --batch [--jobs n] [--max-steps n] [--timeout ms] <file|dir|@list>...");
+            System.exit(65);
+        } else if (args.length == 1) {
+            try {
+                runtime.runFile(args[0], limits);
+            } finally {
+                runtime.flush();
+            }
+            if (runtime.hadError()) System.exit(64);
+            if (runtime.hadRuntimeError()) System.exit(70);
         } else {
-            report(token.line, " at '%s'".formatted(token.lexeme), error);
+            runPrompt(runtime);
         }
     }
 
-    public static void runtimeError(RuntimeError error) {
-        System.err.printf("%s\n[line = %d]%n", error.getMessage(), error.getToken().line);
-        hadRuntimeError = true;
-    }
-
-    public static void report(int line, String where, String error) {
-        System.out.printf("[line=%d] Error %s: %s%n", line, where, error);
-        hadError = true;
+    private static void runPrompt(LoxRuntime runtime) throws IOException {
+        new Terminal(line -> {
+            runtime.runRepl(line);
+            runtime.flush();
+            runtime.resetErrors();
+        }).run();
     }
-
 }
\ No newline at end of file
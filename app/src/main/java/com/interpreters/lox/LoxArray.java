@@ -0,0 +1,312 @@
+package com.interpreters.lox;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Built-in growable array. Elements stay unboxed in a {@code double[]} for as long as every element is a number
+ * and move to an {@code Object[]} the first time anything else is stored; {@code sort} moves them back if only
+ * numbers are left. From {@link #PARALLEL_THRESHOLD} elements on, {@code map}, {@code filter} and the sorts split
+ * their work over the common fork-join pool, giving each worker thread a forked interpreter. Callbacks must not modify the array they are iterating.
+ */
+public class LoxArray implements LoxObject, LoxIndexable {
+    static final int PARALLEL_THRESHOLD = 1 << 13;
+    private static final int CHUNK_SIZE = 1 << 11;
+
+    // properties; the methods index the array of bound methods
+    private static final int LENGTH = -1;
+    private static final int PUSH = 0;
+    private static final int POP = 1;
+    private static final int MAP = 2;
+    private static final int FILTER = 3;
+    private static final int REDUCE = 4;
+    private static final int SORT = 5;
+    private static final int SORT_WITH = 6;
+    private static final int METHOD_COUNT = 7;
+
+    private double[] numbers = new double[8];
+    private Object[] objects;
+    private int size;
+    // created the first time a method is read, so reading arr.push in a loop doesn't allocate
+    private NativeFunction[] methods;
+
+    private interface ChunkTask {
+        void run(Interpreter worker, int from, int to);
+    }
+
+    public static LoxArray of(Object[] values, int size) {
+        var array = new LoxArray();
+        array.ensureCapacity(size);
+        for (int i = 0; i < size; i++) {
+            array.push(values[i]);
+        }
+        return array;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Object get(int i) {
+        if (objects == null) {
+            return numbers[i];
+        }
+        return objects[i];
+    }
+
+    public void set(int i, Object value) {
+        if (objects == null) {
+            if (value instanceof Double d) {
+                numbers[i] = d;
+                return;
+            }
+            inflate();
+        }
+        objects[i] = value;
+    }
+
+    public void push(Object value) {
+        ensureCapacity(size + 1);
+        size++;
+        set(size - 1, value);
+    }
+
+    public Object pop() {
+        if (size == 0) {
+            throw new RuntimeError("Can't pop from an empty array");
+        }
+
+        var value = get(size - 1);
+        if (objects != null) {
+            objects[size - 1] = null;
+        }
+        size--;
+        return value;
+    }
+
+    @Override
+    public Object get(Token name) {
+        int method = switch (name.lexeme) {
+            case "length" -> LENGTH;
+            case "push" -> PUSH;
+            case "pop" -> POP;
+            case "map" -> MAP;
+            case "filter" -> FILTER;
+            case "reduce" -> REDUCE;
+            case "sort" -> SORT;
+            case "sortWith" -> SORT_WITH;
+            default -> throw new RuntimeError(name, "Unknown array property '%s'".formatted(name.lexeme));
+        };
+        if (method == LENGTH) {
+            return (double) size;
+        }
+
+        // a racing thread may bind a method twice, which is harmless
+        var methods = this.methods;
+        if (methods == null) {
+            methods = new NativeFunction[METHOD_COUNT];
+            this.methods = methods;
+        }
+        var function = methods[method];
+        if (function == null) {
+            function = bind(method);
+            methods[method] = function;
+        }
+        return function;
+    }
+
+    private NativeFunction bind(int method) {
+        return switch (method) {
+            case PUSH -> new NativeFunction("push", 1, (interpreter, args) -> {
+                push(args.get(0));
+                return null;
+            });
+            case POP -> new NativeFunction("pop", 0, (interpreter, args) -> pop());
+            case MAP -> new NativeFunction("map", 1, (interpreter, args) -> map(interpreter, callback(args.get(0), 1)));
+            case FILTER -> new NativeFunction("filter", 1, (interpreter, args) -> filter(interpreter, callback(args.get(0), 1)));
+            case REDUCE -> new NativeFunction("reduce", 2, (interpreter, args) -> reduce(interpreter, callback(args.get(0), 2), args.get(1)));
+            case SORT -> new NativeFunction("sort", 0, (interpreter, args) -> sort());
+            case SORT_WITH -> new NativeFunction("sortWith", 1, (interpreter, args) -> sortWith(interpreter, callback(args.get(0), 2)));
+            default -> throw new IllegalArgumentException("No array method " + method);
+        };
+    }
+
+    @Override
+    public Object getIndex(Token bracket, Object index) {
+        return get(checkIndex(bracket, index));
+    }
+
+    @Override
+    public void setIndex(Token bracket, Object index, Object value) {
+        set(checkIndex(bracket, index), value);
+    }
+
+    private int checkIndex(Token bracket, Object index) {
+        if (!(index instanceof Double d) || d != Math.rint(d)) {
+            throw new RuntimeError(bracket, "Array index should be an integer");
+        }
+        if (d < 0 || d >= size) {
+            throw new RuntimeError(bracket, "Array index %s out of bounds for length %d".formatted(Interpreter.stringify(d), size));
+        }
+        return d.intValue();
+    }
+
+    private LoxArray map(Interpreter interpreter, LoxCallable fn) {
+        var result = new Object[size];
+        forEachChunk(interpreter, (worker, from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = fn.call(worker, Collections.singletonList(get(i)));
+            }
+        });
+        return LoxArray.of(result, result.length);
+    }
+
+    private LoxArray filter(Interpreter interpreter, LoxCallable fn) {
+        var keep = new boolean[size];
+        forEachChunk(interpreter, (worker, from, to) -> {
+            for (int i = from; i < to; i++) {
+                keep[i] = Interpreter.isTruthy(fn.call(worker, Collections.singletonList(get(i))));
+            }
+        });
+
+        var result = new LoxArray();
+        for (int i = 0; i < keep.length; i++) {
+            if (keep[i]) result.push(get(i));
+        }
+        return result;
+    }
+
+    // Stays sequential: nothing tells us the callback is associative.
+    private Object reduce(Interpreter interpreter, LoxCallable fn, Object initial) {
+        var accumulator = initial;
+        for (int i = 0; i < size; i++) {
+            accumulator = fn.call(interpreter, Arrays.asList(accumulator, get(i)));
+        }
+        return accumulator;
+    }
+
+    // goes by the elements, not the storage: an array that held something else before can hold only numbers again
+    private LoxArray sort() {
+        if (objects != null && allNumbers()) {
+            deflate();
+        }
+        if (objects == null) {
+            if (size >= PARALLEL_THRESHOLD) {
+                Arrays.parallelSort(numbers, 0, size);
+            } else {
+                Arrays.sort(numbers, 0, size);
+            }
+            return this;
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (!(objects[i] instanceof String)) {
+                throw new RuntimeError("Can only sort arrays of numbers or of strings, use sortWith instead");
+            }
+        }
+        sortObjects(objects, Comparator.comparing(o -> (String) o));
+        return this;
+    }
+
+    private boolean allNumbers() {
+        for (int i = 0; i < size; i++) {
+            if (!(objects[i] instanceof Double)) return false;
+        }
+        return true;
+    }
+
+    private LoxArray sortWith(Interpreter interpreter, LoxCallable fn) {
+        var workers = ThreadLocal.withInitial(interpreter::fork);
+        var parallel = size >= PARALLEL_THRESHOLD;
+        Comparator<Object> comparator = (a, b) -> {
+            var result = fn.call(parallel ? workers.get() : interpreter, Arrays.asList(a, b));
+            if (!(result instanceof Double d)) {
+                throw new RuntimeError("Comparator should return a number");
+            }
+            return d < 0 ? -1 : d > 0 ? 1 : 0;
+        };
+
+        var values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = get(i);
+        }
+        sortObjects(values, comparator);
+        for (int i = 0; i < values.length; i++) {
+            set(i, values[i]);
+        }
+        return this;
+    }
+
+    private void sortObjects(Object[] values, Comparator<Object> comparator) {
+        try {
+            if (size >= PARALLEL_THRESHOLD) {
+                Arrays.parallelSort(values, 0, size, comparator);
+            } else {
+                Arrays.sort(values, 0, size, comparator);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeError("Comparator gives inconsistent results");
+        }
+    }
+
+    private void forEachChunk(Interpreter interpreter, ChunkTask task) {
+        int n = size;
+        if (n < PARALLEL_THRESHOLD) {
+            task.run(interpreter, 0, n);
+            return;
+        }
+
+        int chunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream.range(0, chunks).parallel().forEach(chunk ->
+                task.run(interpreter.fork(), chunk * CHUNK_SIZE, Math.min(n, (chunk + 1) * CHUNK_SIZE)));
+    }
+
+    private static LoxCallable callback(Object fn, int arity) {
+        if (!(fn instanceof LoxCallable callable) || callable.arity() != arity) {
+            throw new RuntimeError("Expected a function taking %d argument(s)".formatted(arity));
+        }
+        return callable;
+    }
+
+    private void inflate() {
+        objects = new Object[numbers.length];
+        for (int i = 0; i < size; i++) {
+            objects[i] = numbers[i];
+        }
+        numbers = null;
+    }
+
+    private void deflate() {
+        numbers = new double[objects.length];
+        for (int i = 0; i < size; i++) {
+            numbers[i] = (Double) objects[i];
+        }
+        objects = null;
+    }
+
+    private void ensureCapacity(int capacity) {
+        int length = objects == null ? numbers.length : objects.length;
+        if (capacity <= length) {
+            return;
+        }
+
+        int newLength = Math.max(capacity, length * 2);
+        if (objects == null) {
+            numbers = Arrays.copyOf(numbers, newLength);
+        } else {
+            objects = Arrays.copyOf(objects, newLength);
+        }
+    }
+
+    @Override
+    public String toString() {
+        var builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(Interpreter.stringify(get(i)));
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,88 @@
+package com.interpreters.lox;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded FIFO channel between Lox tasks. {@code send} blocks while the channel is full,
+ * {@code receive} blocks while it is empty; once closed and drained, {@code receive} returns nil.
+ * Uses a lock rather than {@code synchronized} so blocked virtual threads don't pin their carrier.
+ */
+public class LoxChannel {
+    private final Object[] buffer;
+    private int head;
+    private int size;
+    private boolean closed;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    public LoxChannel(int capacity) {
+        if (capacity < 1) {
+            throw new RuntimeError("Channel capacity should be at least 1");
+        }
+        this.buffer = new Object[capacity];
+    }
+
+    public void send(Object value) {
+        lock.lock();
+        try {
+            while (size == buffer.length && !closed) {
+                notFull.await();
+            }
+            if (closed) {
+                throw new RuntimeError("Can't send on a closed channel");
+            }
+
+            buffer[(head + size) % buffer.length] = value;
+            size++;
+            notEmpty.signal();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError("Interrupted while sending on channel");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Object receive() {
+        lock.lock();
+        try {
+            while (size == 0 && !closed) {
+                notEmpty.await();
+            }
+            if (size == 0) {
+                return null;
+            }
+
+            var value = buffer[head];
+            buffer[head] = null;
+            head = (head + 1) % buffer.length;
+            size--;
+            notFull.signal();
+            return value;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError("Interrupted while receiving from channel");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<channel>";
+    }
+}
\ No newline at end of file
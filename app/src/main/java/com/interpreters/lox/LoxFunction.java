@@ -31,7 +31,7 @@ public class LoxFunction implements LoxCallable {
         }
 
         try {
-            interpreter.executeBlock(function.body(), env);
+            execute(interpreter, env);
         } catch (Return ret) {
             if (isInitializer) {
                 return environment.getAt(0, "this");
@@ -47,10 +47,35 @@ public class LoxFunction implements LoxCallable {
         return null;
     }
 
+    // engines that keep the body encoded in their own form override this to run it without looking it up
+    void execute(Interpreter interpreter, Environment env) {
+        interpreter.executeBlock(function.body(), env);
+    }
+
+    String name() {
+        return name;
+    }
+
+    Expr.Function declaration() {
+        return function;
+    }
+
+    Environment closure() {
+        return environment;
+    }
+
+    boolean isInitializer() {
+        return isInitializer;
+    }
+
     public LoxFunction bind(LoxInstance thisInstance) {
         var env = new Environment(environment);
         env.define("this", thisInstance);
-        return new LoxFunction(name, function, env, isInitializer);
+        return withClosure(env);
+    }
+
+    LoxFunction withClosure(Environment environment) {
+        return new LoxFunction(name, function, environment, isInitializer);
     }
 
     @Override
@@ -0,0 +1,55 @@
+package com.interpreters.lox;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The result of {@code spawn(fn)}: {@code fn} runs on its own virtual thread with a forked interpreter.
+ * Errors raised by the task surface at the {@code await} call, with the location inside the task.
+ */
+public class LoxFuture {
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+    private LoxFuture() {
+    }
+
+    public static LoxFuture spawn(Interpreter interpreter, LoxCallable fn) {
+        if (fn.arity() != 0) {
+            throw new RuntimeError("Can only spawn functions without parameters");
+        }
+
+        var future = new LoxFuture();
+        var worker = interpreter.fork();
+        Thread.ofVirtual().name("lox-task").start(() -> {
+            try {
+                future.result.complete(fn.call(worker, List.of()));
+            } catch (Throwable t) {
+                future.result.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    public Object await() {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeError("Interrupted while awaiting task");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new RuntimeError("Task failed: " + e.getCause());
+        }
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    @Override
+    public String toString() {
+        return isDone() ? "<future done>" : "<future pending>";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.interpreters.lox;
+
+/**
+ * A value supporting {@code value[index]} reads and {@code value[index] = x} writes.
+ */
+public interface LoxIndexable {
+    Object getIndex(Token bracket, Object index);
+
+    void setIndex(Token bracket, Object index, Object value);
+}
\ No newline at end of file
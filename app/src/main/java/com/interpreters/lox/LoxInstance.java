@@ -1,11 +1,14 @@
 package com.interpreters.lox;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class LoxInstance {
+    // value stored for fields set to nil
+    private static final Object NIL = new Object();
+
     private final LoxClass klass;
-    private final Map<String, Object> properties = new HashMap<>();
+    private final Map<String, Object> properties = new ConcurrentHashMap<>();
 
     public LoxInstance(LoxClass klass) {
         this.klass = klass;
@@ -17,8 +20,9 @@ public class LoxInstance {
     }
 
     public Object get(Token name) {
-        if (properties.containsKey(name.lexeme)) {
-            return properties.get(name.lexeme);
+        var value = properties.get(name.lexeme);
+        if (value != null) {
+            return value == NIL ? null : value;
         }
 
         var method = klass.findMethod(name.lexeme);
@@ -28,6 +32,6 @@ public class LoxInstance {
     }
 
     public void set(Token name, Object value) {
-        properties.put(name.lexeme, value);
+        properties.put(name.lexeme, value == null ? NIL : value);
     }
 }
@@ -0,0 +1,94 @@
+package com.interpreters.lox;
+
+import com.interpreters.lox.runtime.MapTable;
+
+import java.util.Arrays;
+
+/**
+ * Built-in hash map, on the table compiled programs use too (see {@link MapTable}).
+ */
+public class LoxMap extends MapTable implements LoxObject, LoxIndexable {
+    // properties; the methods index the array of bound methods
+    private static final int SIZE = -1;
+    private static final int HAS = 0;
+    private static final int REMOVE = 1;
+    private static final int KEYS = 2;
+    private static final int VALUES = 3;
+    private static final int FOR_EACH = 4;
+    private static final int METHOD_COUNT = 5;
+
+    // created the first time a method is read, so m.keys is the same function every time, as arr.push is
+    private NativeFunction[] methods;
+
+    public LoxArray keys() {
+        var keys = new LoxArray();
+        forEachEntry((key, value) -> keys.push(key));
+        return keys;
+    }
+
+    public LoxArray values() {
+        var values = new LoxArray();
+        forEachEntry((key, value) -> values.push(value));
+        return values;
+    }
+
+    @Override
+    public Object get(Token name) {
+        int method = switch (name.lexeme) {
+            case "size" -> SIZE;
+            case "has" -> HAS;
+            case "remove" -> REMOVE;
+            case "keys" -> KEYS;
+            case "values" -> VALUES;
+            case "forEach" -> FOR_EACH;
+            default -> throw new RuntimeError(name, "Unknown map property '%s'".formatted(name.lexeme));
+        };
+        if (method == SIZE) {
+            return (double) size();
+        }
+
+        // a racing thread may bind a method twice, which is harmless
+        var methods = this.methods;
+        if (methods == null) {
+            methods = new NativeFunction[METHOD_COUNT];
+            this.methods = methods;
+        }
+        var function = methods[method];
+        if (function == null) {
+            function = bind(method);
+            methods[method] = function;
+        }
+        return function;
+    }
+
+    private NativeFunction bind(int method) {
+        return switch (method) {
+            case HAS -> new NativeFunction("has", 1, (interpreter, args) -> containsKey(args.get(0)));
+            case REMOVE -> new NativeFunction("remove", 1, (interpreter, args) -> remove(args.get(0)));
+            case KEYS -> new NativeFunction("keys", 0, (interpreter, args) -> keys());
+            case VALUES -> new NativeFunction("values", 0, (interpreter, args) -> values());
+            case FOR_EACH -> new NativeFunction("forEach", 1, (interpreter, args) -> {
+                forEach(interpreter, args.get(0));
+                return null;
+            });
+            default -> throw new IllegalArgumentException("No map method " + method);
+        };
+    }
+
+    @Override
+    public Object getIndex(Token bracket, Object index) {
+        return get(index);
+    }
+
+    @Override
+    public void setIndex(Token bracket, Object index, Object value) {
+        put(index, value);
+    }
+
+    private void forEach(Interpreter interpreter, Object fn) {
+        if (!(fn instanceof LoxCallable callable) || callable.arity() != 2) {
+            throw new RuntimeError("Expected a function taking 2 argument(s)");
+        }
+        forEachEntry((key, value) -> callable.call(interpreter, Arrays.asList(key, value)));
+    }
+}
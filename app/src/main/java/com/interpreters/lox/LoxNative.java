@@ -0,0 +1,19 @@
+package com.interpreters.lox;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a public static method of a {@link NativeModule} as a Lox native function, named {@link #value()} in Lox.
+ * <p>
+ * Parameters may be {@code double}, {@code boolean}, {@code String} or {@code Object}; arguments of any other Lox
+ * type than the one declared are a runtime error. The method may return {@code void} (nil), {@code double},
+ * {@code boolean}, {@code String}, or an {@code Object} that is itself a Lox value.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface LoxNative {
+    String value();
+}
@@ -0,0 +1,8 @@
+package com.interpreters.lox;
+
+/**
+ * A built-in value with properties that can be read with {@code value.name}, e.g. methods of native types.
+ */
+public interface LoxObject {
+    Object get(Token name);
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.interpreters.lox;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A line-by-line input stream for Lox: stdin, or a file opened with {@code open(path, "r")}.
+ * Files from {@link #MAPPED_THRESHOLD} bytes on are read through {@link MappedLineReader}, smaller ones through
+ * a buffered reader. Either way only the current line is held on the heap.
+ */
+public class LoxReader implements LoxObject {
+    static final long MAPPED_THRESHOLD = 16L << 20;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    interface LineSource extends Closeable {
+        String readLine() throws IOException;
+    }
+
+    private static LoxReader stdin;
+
+    private final String name;
+    private final LineSource source;
+    private boolean closed;
+
+    private LoxReader(String name, LineSource source) {
+        this.name = name;
+        this.source = source;
+    }
+
+    public static synchronized LoxReader stdin() {
+        if (stdin == null) {
+            var channel = new FileInputStream(FileDescriptor.in).getChannel();
+            var reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+            stdin = new LoxReader("stdin", lines(reader));
+        }
+        return stdin;
+    }
+
+    public static LoxReader open(Path path) throws IOException {
+        if (Files.size(path) >= MAPPED_THRESHOLD) {
+            return new LoxReader(path.toString(), new MappedLineReader(path));
+        }
+        return new LoxReader(path.toString(), lines(Files.newBufferedReader(path, StandardCharsets.UTF_8)));
+    }
+
+    private static LineSource lines(BufferedReader reader) {
+        return new LineSource() {
+            @Override
+            public String readLine() throws IOException {
+                return reader.readLine();
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    /**
+     * Returns the next line without its terminator, or nil once the input is exhausted.
+     */
+    public synchronized String readLine() {
+        if (closed) {
+            throw new RuntimeError("Can't read from closed file '%s'".formatted(name));
+        }
+
+        try {
+            return source.readLine();
+        } catch (IOException e) {
+            throw new RuntimeError("Error reading '%s': %s".formatted(name, e.getMessage()));
+        }
+    }
+
+    public synchronized void close() {
+        if (closed) return;
+
+        closed = true;
+        try {
+            source.close();
+        } catch (IOException e) {
+            throw new RuntimeError("Error closing '%s': %s".formatted(name, e.getMessage()));
+        }
+    }
+
+    @Override
+    public Object get(Token name) {
+        return switch (name.lexeme) {
+            case "readLine" -> new NativeFunction("readLine", 0, (interpreter, args) -> readLine());
+            case "close" -> new NativeFunction("close", 0, (interpreter, args) -> {
+                close();
+                return null;
+            });
+            default -> throw new RuntimeError(name, "Unknown file property '%s'".formatted(name.lexeme));
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "<reader %s>".formatted(name);
+    }
+}
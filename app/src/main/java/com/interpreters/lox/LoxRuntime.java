@@ -0,0 +1,180 @@
+package com.interpreters.lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * An isolated Lox execution context: owns its globals, error state and output streams.
+ * Separate runtimes share nothing mutable, so they can run on different threads at the same time.
+ * A single runtime is not thread-safe.
+ */
+public class LoxRuntime {
+    private final ErrorReporter reporter;
+    private final Interpreter interpreter;
+
+    /**
+     * Prints straight to the stdout file descriptor; compile errors still go through {@code System.out}.
+     */
+    public LoxRuntime() {
+        this(Engine.TREE_WALKING);
+    }
+
+    public LoxRuntime(Engine engine) {
+        this(OutputSink.stdout(), System.out, System.err, engine);
+    }
+
+    public LoxRuntime(PrintStream out, PrintStream err) {
+        this(out, err, Engine.TREE_WALKING);
+    }
+
+    public LoxRuntime(PrintStream out, PrintStream err, Engine engine) {
+        this(OutputSink.of(out), out, err, engine);
+    }
+
+    private LoxRuntime(OutputSink out, PrintStream diagnostics, PrintStream err, Engine engine) {
+        this.reporter = new ErrorReporter(diagnostics, err);
+        this.interpreter = engine.create(out, reporter);
+    }
+
+    /**
+     * Scans, parses and resolves {@code source}. Errors go to {@code reporter}; returns null if there were any.
+     */
+    public static Program compile(String source, ErrorReporter reporter) {
+        var tokens = ParallelScanner.scan(source, reporter);
+
+        var parser = new Parser(tokens, reporter);
+        return resolve(parser.parse(), reporter);
+    }
+
+    public Program compile(String source) {
+        return compile(source, reporter);
+    }
+
+    public void runFile(String filename) throws IOException {
+        runFile(filename, ExecutionLimits.NONE);
+    }
+
+    public void runFile(String filename, ExecutionLimits limits) throws IOException {
+        var bytes = Files.readAllBytes(Paths.get(filename));
+        run(new String(bytes, StandardCharsets.UTF_8), limits);
+    }
+
+    public void run(String source) {
+        var program = compile(source);
+        if (program != null) {
+            run(program);
+        }
+    }
+
+    public void run(Program program) {
+        interpreter.interpret(program);
+    }
+
+    public void run(String source, ExecutionLimits limits) {
+        var program = compile(source);
+        if (program != null) {
+            run(program, limits);
+        }
+    }
+
+    public void run(Program program, ExecutionLimits limits) {
+        interpreter.interpret(program, limits);
+    }
+
+    /**
+     * Stops the current run at its next loop iteration or call, reporting it as a runtime error. Called while no
+     * run is in progress, it stops the next one before its first loop iteration or call.
+     * Safe to call from another thread.
+     */
+    public void interrupt() {
+        interpreter.interrupt();
+    }
+
+    public void runRepl(String source) {
+        var scanner = new Scanner(source, reporter);
+        var tokens = scanner.scan();
+
+        var endsInSemicolon = tokens.size() >= 2 && tokens.get(tokens.size() - 2).type == TokenType.SEMICOLON;
+        if (endsInSemicolon) {
+            var program = resolve(new Parser(tokens, reporter).parse(), reporter);
+            if (program != null) {
+                interpreter.interpret(program);
+            }
+            return;
+        }
+
+        // insert semicolon before EOF and parse
+        assert tokens.stream().anyMatch(t -> t.type == TokenType.EOF);
+        if (tokens.size() == 1) {
+            return;
+        }
+
+        tokens.add(tokens.size() - 1, new Token(TokenType.SEMICOLON, ";", null, 1));
+        var program = resolve(new Parser(tokens, reporter).parse(), reporter);
+        if (program == null) {
+            return;
+        }
+
+        assert program.statements().size() == 1;
+        var stmt = program.statements().get(0);
+
+        if (stmt instanceof Stmt.Expression) {
+            interpreter.resolve(program);
+            interpreter.evaluteAndPrint(((Stmt.Expression) stmt).expr());
+        } else {
+            interpreter.interpret(program);
+        }
+    }
+
+    /**
+     * Scans {@code source}, reporting errors; returns null if there were any.
+     */
+    List<Token> scan(String source) {
+        var tokens = new Scanner(source, reporter).scan();
+        return reporter.hadError() ? null : tokens;
+    }
+
+    /**
+     * Removes a global, so later references to it fail as undefined.
+     */
+    void undefine(String name) {
+        interpreter.undefine(name);
+    }
+
+    static Program resolve(List<Stmt> statements, ErrorReporter reporter) {
+        if (reporter.hadError()) {
+            return null;
+        }
+
+        var resolver = new Resolver(reporter);
+        resolver.resolve(statements);
+
+        if (reporter.hadError()) {
+            return null;
+        }
+        return Optimizer.optimize(new Program(statements, resolver.getLocals(), resolver.getGlobals()));
+    }
+
+    /**
+     * Writes out any buffered {@code print} output. Call before exiting and before handing the terminal back.
+     */
+    public void flush() {
+        interpreter.flush();
+    }
+
+    public boolean hadError() {
+        return reporter.hadError();
+    }
+
+    public boolean hadRuntimeError() {
+        return reporter.hadRuntimeError();
+    }
+
+    public void resetErrors() {
+        reporter.reset();
+    }
+}
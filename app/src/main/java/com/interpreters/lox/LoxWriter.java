@@ -0,0 +1,103 @@
+package com.interpreters.lox;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * A file opened with {@code open(path, "w")} or {@code open(path, "a")}. Writes are buffered; the interpreter
+ * flushes writers that are still open when the runtime is flushed, so output isn't lost if a script forgets
+ * to close them.
+ */
+public class LoxWriter implements LoxObject {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String name;
+    private final BufferedWriter writer;
+    private final Consumer<LoxWriter> onClose;
+    private boolean closed;
+
+    private LoxWriter(String name, BufferedWriter writer, Consumer<LoxWriter> onClose) {
+        this.name = name;
+        this.writer = writer;
+        this.onClose = onClose;
+    }
+
+    public static LoxWriter open(Path path, boolean append, Consumer<LoxWriter> onClose) throws IOException {
+        OpenOption[] options = append
+                ? new OpenOption[]{CREATE, WRITE, APPEND}
+                : new OpenOption[]{CREATE, WRITE, TRUNCATE_EXISTING};
+        var channel = FileChannel.open(path, options);
+        var writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE);
+        return new LoxWriter(path.toString(), writer, onClose);
+    }
+
+    public synchronized void write(String text) {
+        if (closed) {
+            throw new RuntimeError("Can't write to closed file '%s'".formatted(name));
+        }
+
+        try {
+            writer.write(text);
+        } catch (IOException e) {
+            throw new RuntimeError("Error writing '%s': %s".formatted(name, e.getMessage()));
+        }
+    }
+
+    public synchronized void flush() {
+        if (closed) return;
+
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeError("Error writing '%s': %s".formatted(name, e.getMessage()));
+        }
+    }
+
+    public synchronized void close() {
+        if (closed) return;
+
+        closed = true;
+        onClose.accept(this);
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new RuntimeError("Error closing '%s': %s".formatted(name, e.getMessage()));
+        }
+    }
+
+    @Override
+    public Object get(Token name) {
+        return switch (name.lexeme) {
+            case "write" -> new NativeFunction("write", 1, (interpreter, args) -> {
+                write(Interpreter.stringify(args.get(0)));
+                return null;
+            });
+            case "writeLine" -> new NativeFunction("writeLine", 1, (interpreter, args) -> {
+                write(Interpreter.stringify(args.get(0)) + System.lineSeparator());
+                return null;
+            });
+            case "flush" -> new NativeFunction("flush", 0, (interpreter, args) -> {
+                flush();
+                return null;
+            });
+            case "close" -> new NativeFunction("close", 0, (interpreter, args) -> {
+                close();
+                return null;
+            });
+            default -> throw new RuntimeError(name, "Unknown file property '%s'".formatted(name.lexeme));
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "<writer %s>".formatted(name);
+    }
+}
@@ -0,0 +1,90 @@
+package com.interpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads UTF-8 lines from a file through a sliding memory-mapped window of {@link #WINDOW_SIZE} bytes. Windows that
+ * have been read are only unmapped once they are garbage collected, so for a while several can be mapped at once.
+ * Lines end like they do for {@link java.io.BufferedReader}: at {@code \n}, at {@code \r} or at {@code \r\n}.
+ */
+class MappedLineReader implements LoxReader.LineSource {
+    private static final long WINDOW_SIZE = 64L << 20;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    // the last line ended with \r, so a \n right after it belongs to the same terminator
+    private boolean skipLineFeed;
+
+    MappedLineReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        ByteArrayOutputStream carry = null; // part of a line that started in an earlier window
+
+        while (true) {
+            if (window == null || !window.hasRemaining()) {
+                long next = window == null ? 0 : windowStart + window.limit();
+                if (next >= fileSize) {
+                    return carry == null ? null : decode(carry.toByteArray());
+                }
+                windowStart = next;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, next, Math.min(WINDOW_SIZE, fileSize - next));
+            }
+
+            int start = window.position();
+            int limit = window.limit();
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (window.get(start) == '\n') {
+                    window.position(start + 1);
+                    continue;
+                }
+            }
+
+            int end = start;
+            while (end < limit && window.get(end) != '\n' && window.get(end) != '\r') {
+                end++;
+            }
+
+            var bytes = new byte[end - start];
+            window.get(start, bytes);
+
+            if (end < limit) {
+                skipLineFeed = window.get(end) == '\r';
+                window.position(end + 1);
+                if (carry == null) {
+                    return decode(bytes);
+                }
+                carry.write(bytes);
+                return decode(carry.toByteArray());
+            }
+
+            window.position(limit);
+            if (carry == null) {
+                carry = new ByteArrayOutputStream();
+            }
+            carry.write(bytes);
+        }
+    }
+
+    private static String decode(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
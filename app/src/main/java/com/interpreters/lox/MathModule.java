@@ -0,0 +1,42 @@
+package com.interpreters.lox;
+
+/**
+ * Math natives, registered as a {@link NativeModule}.
+ */
+public final class MathModule implements NativeModule {
+
+    @LoxNative("sqrt")
+    public static double sqrt(double x) {
+        return Math.sqrt(x);
+    }
+
+    @LoxNative("abs")
+    public static double abs(double x) {
+        return Math.abs(x);
+    }
+
+    @LoxNative("floor")
+    public static double floor(double x) {
+        return Math.floor(x);
+    }
+
+    @LoxNative("ceil")
+    public static double ceil(double x) {
+        return Math.ceil(x);
+    }
+
+    @LoxNative("pow")
+    public static double pow(double base, double exponent) {
+        return Math.pow(base, exponent);
+    }
+
+    @LoxNative("min")
+    public static double min(double a, double b) {
+        return Math.min(a, b);
+    }
+
+    @LoxNative("max")
+    public static double max(double a, double b) {
+        return Math.max(a, b);
+    }
+}
@@ -0,0 +1,101 @@
+package com.interpreters.lox;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The result of {@code memo(fn)}: calls {@code fn} once per distinct argument list and answers repeated calls from
+ * a cache holding the {@link #DEFAULT_CAPACITY} most recently used results. Arguments are matched like Lox
+ * {@code ==} (Objects.equals), so numbers and strings hit by value and instances by identity.
+ * Exposes {@code hits}, {@code misses}, {@code size} and {@code clear()} for tuning.
+ */
+public class MemoizedFunction implements LoxCallable, LoxObject {
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private final LoxCallable function;
+    private final Map<Object, Object> cache;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long hits;
+    private long misses;
+
+    public MemoizedFunction(LoxCallable function, int capacity) {
+        this.function = function;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @Override
+    public int arity() {
+        return function.arity();
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> args) {
+        // single arguments are their own key, which saves a list per call for the common case
+        Object key = args.size() == 1 ? args.get(0) : Arrays.asList(args.toArray());
+
+        lock.lock();
+        try {
+            if (cache.containsKey(key)) {
+                hits++;
+                return cache.get(key);
+            }
+            misses++;
+        } finally {
+            lock.unlock();
+        }
+
+        // computed without holding the lock: recursive calls go through this same cache
+        var result = function.call(interpreter, args);
+
+        lock.lock();
+        try {
+            cache.put(key, result);
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    @Override
+    public Object get(Token name) {
+        lock.lock();
+        try {
+            return switch (name.lexeme) {
+                case "hits" -> (double) hits;
+                case "misses" -> (double) misses;
+                case "size" -> (double) cache.size();
+                case "clear" -> new NativeFunction("clear", 0, (interpreter, args) -> {
+                    clear();
+                    return null;
+                });
+                default -> throw new RuntimeError(name, "Unknown property '%s'".formatted(name.lexeme));
+            };
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void clear() {
+        lock.lock();
+        try {
+            cache.clear();
+            hits = 0;
+            misses = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<memo %s>".formatted(function);
+    }
+}
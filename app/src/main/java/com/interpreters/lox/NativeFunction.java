@@ -0,0 +1,35 @@
+package com.interpreters.lox;
+
+import java.util.List;
+
+public class NativeFunction implements LoxCallable {
+
+    public interface Body {
+        Object call(Interpreter interpreter, List<Object> args);
+    }
+
+    private final String name;
+    private final int arity;
+    private final Body body;
+
+    public NativeFunction(String name, int arity, Body body) {
+        this.name = name;
+        this.arity = arity;
+        this.body = body;
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> args) {
+        return body.call(interpreter, args);
+    }
+
+    @Override
+    public String toString() {
+        return "<native fn %s()>".formatted(name);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.interpreters.lox;
+
+/**
+ * A set of native functions, found with {@link java.util.ServiceLoader}: list implementations in
+ * {@code META-INF/services/com.interpreters.lox.NativeModule}. Every public static method of the implementing
+ * class annotated with {@link LoxNative} becomes a global in each interpreter. A module native may replace a
+ * built-in one of the same name; two modules defining the same name is an error.
+ */
+public interface NativeModule {
+}
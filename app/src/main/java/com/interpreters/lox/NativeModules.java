@@ -0,0 +1,36 @@
+package com.interpreters.lox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * The natives of every {@link NativeModule} on the class path, bound once per JVM.
+ */
+final class NativeModules {
+    private static final List<BoundNative> NATIVES = load();
+
+    private NativeModules() {
+    }
+
+    static List<BoundNative> all() {
+        return NATIVES;
+    }
+
+    private static List<BoundNative> load() {
+        var natives = new ArrayList<BoundNative>();
+        var modules = new HashMap<String, Class<?>>();
+        for (var module : ServiceLoader.load(NativeModule.class)) {
+            for (var bound : BoundNative.bind(module.getClass())) {
+                var previous = modules.putIfAbsent(bound.name(), module.getClass());
+                if (previous != null) {
+                    throw new IllegalStateException("Native '%s' is defined by both %s and %s"
+                            .formatted(bound.name(), previous.getName(), module.getClass().getName()));
+                }
+                natives.add(bound);
+            }
+        }
+        return List.copyOf(natives);
+    }
+}
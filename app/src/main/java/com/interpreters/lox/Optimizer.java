@@ -0,0 +1,143 @@
+package com.interpreters.lox;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Rewrites a resolved program so common idioms run as one node each:
+ * <ul>
+ *     <li>{@code x = x + c} and {@code x = x - c} for a number literal {@code c} become {@link Expr.Increment},</li>
+ *     <li>{@code x < c}, {@code x <= c}, {@code x > c} and {@code x >= c} become {@link Expr.CompareConstant},</li>
+ *     <li>other {@code x = x op y} with an arithmetic operator become {@link Expr.CompoundAssign}.</li>
+ * </ul>
+ * Fused nodes keep the nodes they replace, whose resolutions still apply and which are used for error messages
+ * and when operands aren't numbers. An assignment rebuilt around a rewritten value takes over the resolution of
+ * the one it replaces; the other resolved nodes are kept as they are.
+ */
+final class Optimizer {
+    private final Map<Expr, Integer> locals;
+
+    private Optimizer(Map<Expr, Integer> locals) {
+        this.locals = new HashMap<>(locals);
+    }
+
+    static Program optimize(Program program) {
+        var optimizer = new Optimizer(program.locals());
+        var statements = optimizer.statements(program.statements());
+        return new Program(statements, optimizer.locals, program.globals());
+    }
+
+    private List<Stmt> statements(List<Stmt> statements) {
+        var result = new ArrayList<Stmt>(statements.size());
+        for (var stmt : statements) {
+            result.add(statement(stmt));
+        }
+        return result;
+    }
+
+    private Stmt statement(Stmt stmt) {
+        if (stmt == null) return null;
+
+        return switch (stmt) {
+            case Stmt.Expression s -> new Stmt.Expression(expression(s.expr()));
+            case Stmt.VarDeclaration s -> new Stmt.VarDeclaration(s.name(), expression(s.initializer()));
+            case Stmt.Block s -> new Stmt.Block(statements(s.statements()));
+            case Stmt.Print s -> new Stmt.Print(expression(s.expr()));
+            case Stmt.If s -> new Stmt.If(expression(s.condition()), statement(s.thenClause()), statement(s.elseClause()));
+            case Stmt.While s -> new Stmt.While(s.keyword(), expression(s.condition()), statement(s.body()));
+            case Stmt.Function s -> function(s);
+            case Stmt.Class s -> {
+                var methods = new ArrayList<Stmt.Function>();
+                for (var method : s.methods()) {
+                    methods.add(function(method));
+                }
+                yield new Stmt.Class(s.name(), s.superclass(), methods);
+            }
+            case Stmt.Break s -> s;
+            case Stmt.Return s -> new Stmt.Return(s.keyword(), expression(s.value()));
+        };
+    }
+
+    private Stmt.Function function(Stmt.Function stmt) {
+        return new Stmt.Function(stmt.name(), (Expr.Function) expression(stmt.function()));
+    }
+
+    private Expr expression(Expr expr) {
+        if (expr == null) return null;
+
+        return switch (expr) {
+            case Expr.Assign e -> {
+                var rebuilt = new Expr.Assign(e.name(), expression(e.value()));
+                var depth = locals.get(e);
+                if (depth != null) {
+                    locals.put(rebuilt, depth);
+                }
+                yield assign(rebuilt);
+            }
+            case Expr.Ternary e -> new Expr.Ternary(expression(e.condition()), expression(e.first()), expression(e.second()));
+            case Expr.Binary e -> binary(new Expr.Binary(expression(e.left()), e.operator(), expression(e.right())));
+            case Expr.Grouping e -> new Expr.Grouping(expression(e.expression()));
+            case Expr.Unary e -> new Expr.Unary(e.operator(), expression(e.right()));
+            case Expr.Logical e -> new Expr.Logical(expression(e.left()), e.operator(), expression(e.right()));
+            case Expr.Call e -> new Expr.Call(expression(e.target()), e.paren(), expressions(e.args()));
+            case Expr.Function e -> new Expr.Function(e.params(), statements(e.body()));
+            case Expr.Get e -> new Expr.Get(expression(e.target()), e.name());
+            case Expr.Set e -> new Expr.Set(expression(e.target()), e.name(), expression(e.value()));
+            case Expr.Index e -> new Expr.Index(expression(e.target()), e.bracket(), expression(e.index()));
+            case Expr.SetIndex e -> new Expr.SetIndex(
+                    expression(e.target()), e.bracket(), expression(e.index()), expression(e.value()));
+            case Expr.Literal e -> e;
+            case Expr.Variable e -> e;
+            case Expr.This e -> e;
+            case Expr.Super e -> e;
+            // already optimized
+            case Expr.Increment e -> e;
+            case Expr.CompareConstant e -> e;
+            case Expr.CompoundAssign e -> e;
+        };
+    }
+
+    private List<Expr> expressions(List<Expr> exprs) {
+        var result = new ArrayList<Expr>(exprs.size());
+        for (var expr : exprs) {
+            result.add(expression(expr));
+        }
+        return result;
+    }
+
+    private Expr assign(Expr.Assign assign) {
+        if (!(assign.value() instanceof Expr.Binary operation)
+                || !(operation.left() instanceof Expr.Variable variable)
+                || !variable.name().lexeme.equals(assign.name().lexeme)) {
+            return assign;
+        }
+        // the read and the write have to refer to the same variable
+        if (!Objects.equals(locals.get(variable), locals.get(assign))) {
+            return assign;
+        }
+
+        var type = operation.operator().type;
+        if ((type == TokenType.PLUS || type == TokenType.MINUS)
+                && operation.right() instanceof Expr.Literal literal && literal.value() instanceof Double c) {
+            return new Expr.Increment(assign, type == TokenType.PLUS ? c : -c);
+        }
+        if (type == TokenType.PLUS || type == TokenType.MINUS || type == TokenType.STAR || type == TokenType.SLASH) {
+            return new Expr.CompoundAssign(assign);
+        }
+        return assign;
+    }
+
+    private Expr binary(Expr.Binary binary) {
+        var type = binary.operator().type;
+        boolean comparison = type == TokenType.LESS || type == TokenType.LESS_EQUAL
+                || type == TokenType.GREATER || type == TokenType.GREATER_EQUAL;
+        if (comparison && binary.left() instanceof Expr.Variable
+                && binary.right() instanceof Expr.Literal literal && literal.value() instanceof Double c) {
+            return new Expr.CompareConstant(binary, c);
+        }
+        return binary;
+    }
+}
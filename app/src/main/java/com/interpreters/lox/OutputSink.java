@@ -0,0 +1,107 @@
+package com.interpreters.lox;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Where {@code print} output goes. Text is encoded straight into a direct buffer and only handed to the
+ * channel when the buffer fills up or on {@link #flush()}, instead of one write per line like {@code System.out}.
+ * Safe to use from several Lox tasks at once. Like {@code PrintStream}, write errors don't propagate: once the
+ * channel fails (e.g. a closed pipe) further output is dropped and {@link #checkError()} returns true.
+ */
+public class OutputSink {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder;
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean trouble;
+
+    public OutputSink(WritableByteChannel channel, Charset charset) {
+        this.channel = channel;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    public static OutputSink stdout() {
+        return new OutputSink(new FileOutputStream(FileDescriptor.out).getChannel(), StandardCharsets.UTF_8);
+    }
+
+    public static OutputSink of(OutputStream out) {
+        return new OutputSink(Channels.newChannel(out), StandardCharsets.UTF_8);
+    }
+
+    public void println(String line) {
+        lock.lock();
+        try {
+            encode(line);
+            encode(LINE_SEPARATOR);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void flush() {
+        lock.lock();
+        try {
+            drain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean checkError() {
+        lock.lock();
+        try {
+            drain();
+            return trouble;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void encode(String text) {
+        var chars = CharBuffer.wrap(text);
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain();
+                continue;
+            }
+
+            while (encoder.flush(buffer).isOverflow()) {
+                drain();
+            }
+            encoder.reset();
+            return;
+        }
+    }
+
+    private void drain() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining() && !trouble) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            trouble = true;
+        } finally {
+            buffer.clear();
+        }
+    }
+}
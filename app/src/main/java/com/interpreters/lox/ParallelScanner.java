@@ -0,0 +1,109 @@
+package com.interpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static com.interpreters.lox.TokenType.EOF;
+
+/**
+ * Scans large sources on a fork-join pool. The source is cut into chunks just after newlines and every chunk is
+ * scanned speculatively, assuming it doesn't start inside a string; comments end at a newline, so strings are the
+ * only tokens that can cross a cut. The chunks are then stitched together in order: a chunk whose start the
+ * previous one ended exactly on is used as is, with its lines shifted; otherwise a string ran past the cut, and the
+ * text after the string is rescanned up to the next cut. Errors are replayed in source order. The result is the
+ * same as {@link Scanner#scan()}.
+ */
+public class ParallelScanner {
+    public static final int THRESHOLD = 1 << 20;
+    private static final int MIN_CHUNK = 64 * 1024;
+
+    private record Chunk(TokenBuffer tokens, int end, int lines, List<Error> errors) {}
+
+    private record Error(int line, String message) {}
+
+    private ParallelScanner() {
+    }
+
+    /**
+     * Scans {@code source} in parallel if it is at least {@link #THRESHOLD} characters long, sequentially otherwise.
+     */
+    public static TokenBuffer scan(String source, ErrorReporter reporter) {
+        if (source.length() < THRESHOLD) {
+            return new Scanner(source, reporter).scanBuffer();
+        }
+
+        var pool = ForkJoinPool.commonPool();
+        int chunkSize = Math.max(MIN_CHUNK, source.length() / (pool.getParallelism() * 4));
+        return scan(source, reporter, pool, chunkSize);
+    }
+
+    static TokenBuffer scan(String source, ErrorReporter reporter, ForkJoinPool pool, int chunkSize) {
+        var cuts = cuts(source, chunkSize);
+        var chars = source.toCharArray();
+
+        var tasks = new ArrayList<ForkJoinTask<Chunk>>();
+        for (int i = 0; i + 1 < cuts.size(); i++) {
+            int from = cuts.get(i);
+            int to = cuts.get(i + 1);
+            tasks.add(pool.submit(() -> scanChunk(chars, from, to)));
+        }
+
+        var tokens = new TokenBuffer(source, source.length() / 4);
+        int position = 0;
+        int line = 1;
+        for (int i = 0; i < tasks.size(); i++) {
+            int next = cuts.get(i + 1);
+            if (position >= next) {
+                // a string from an earlier chunk covers all of this one
+                tasks.get(i).cancel(false);
+                continue;
+            }
+
+            var chunk = position == cuts.get(i) ? tasks.get(i).join() : scanChunk(chars, position, next);
+            tokens.append(chunk.tokens(), line - 1);
+            for (var error : chunk.errors()) {
+                reporter.error(error.line() + line - 1, error.message());
+            }
+            position = chunk.end();
+            line += chunk.lines() - 1;
+        }
+
+        tokens.add(EOF, source.length(), 0, line);
+        return tokens;
+    }
+
+    private static Chunk scanChunk(char[] chars, int from, int to) {
+        var errors = new ArrayList<Error>();
+        var recorder = new ErrorReporter() {
+            @Override
+            public void error(int line, String message) {
+                errors.add(new Error(line, message));
+            }
+        };
+
+        var scanner = new Scanner(chars, recorder);
+        var tokens = scanner.scanChunk(from, to);
+        return new Chunk(tokens, scanner.position(), scanner.line(), errors);
+    }
+
+    // offsets where chunks start, each just after a newline, followed by the length of the source
+    private static List<Integer> cuts(String source, int chunkSize) {
+        var cuts = new ArrayList<Integer>();
+        cuts.add(0);
+
+        int cut = chunkSize;
+        while (cut < source.length()) {
+            int newline = source.indexOf('\n', cut);
+            if (newline < 0) break;
+            cuts.add(newline + 1);
+            cut = newline + 1 + chunkSize;
+        }
+
+        if (cuts.get(cuts.size() - 1) < source.length()) {
+            cuts.add(source.length());
+        }
+        return cuts;
+    }
+}
@@ -9,12 +9,19 @@ public class Parser {
 
     private static final class ParseError extends RuntimeException {}
 
-    private final List<Token> tokens;
+    // tokens are read by index; Token objects are only made for the ones the tree keeps
+    private final TokenBuffer tokens;
+    private final ErrorReporter reporter;
     private int current = 0;
     private int loopDepth = 0;
 
-    public Parser(List<Token> tokens) {
+    public Parser(List<Token> tokens, ErrorReporter reporter) {
+        this(TokenBuffer.of(tokens), reporter);
+    }
+
+    public Parser(TokenBuffer tokens, ErrorReporter reporter) {
         this.tokens = tokens;
+        this.reporter = reporter;
     }
 
 
@@ -28,19 +35,32 @@ public class Parser {
         return result;
     }
 
+    /**
+     * Parses the top-level declaration starting at token {@code position}, or returns null if it has errors.
+     * {@link #position()} is then the index of the token after it.
+     */
+    Stmt parseDeclarationAt(int position) {
+        current = position;
+        return declaration();
+    }
+
+    int position() {
+        return current;
+    }
+
     private void synchronize() {
-        advance();
+        skip();
 
         while (!isAtEnd()) {
-            if (previous().type == SEMICOLON) {
+            if (tokens.type(current - 1) == SEMICOLON) {
                 return;
             }
 
-            switch (peek().type) {
+            switch (peekType()) {
                 case IF, PRINT, CLASS, FOR, RETURN, WHILE, FUN, VAR: return;
             }
 
-            advance();
+            skip();
         }
     }
 
@@ -134,17 +154,24 @@ public class Parser {
     }
 
     private Stmt whileStatement() {
+        var keyword = previous();
         consume(LEFT_PAREN, "'(' expected after 'while'");
         var condition = expression();
         consume(RIGHT_PAREN, "')' expected after condition");
+        // restored even when the body has errors, so statements after the loop don't count as inside it
         loopDepth++;
-        var body = statement();
-        loopDepth--;
+        Stmt body;
+        try {
+            body = statement();
+        } finally {
+            loopDepth--;
+        }
 
-        return new Stmt.While(condition, body);
+        return new Stmt.While(keyword, condition, body);
     }
 
     private Stmt forStatement() {
+        var keyword = previous();
         consume(LEFT_PAREN, "'(' expected after 'for'");
         Stmt initializer;
         if (match(SEMICOLON)) {
@@ -168,8 +195,12 @@ public class Parser {
         consume(RIGHT_PAREN, "Expected ')' after the clauses");
 
         loopDepth++;
-        var body = statement();
-        loopDepth--;
+        Stmt body;
+        try {
+            body = statement();
+        } finally {
+            loopDepth--;
+        }
 
         if (increment != null) {
             body = new Stmt.Block(List.of(body, new Stmt.Expression(increment)));
@@ -178,7 +209,7 @@ public class Parser {
         if (condition == null) {
             condition = new Expr.Literal(true);
         }
-        body = new Stmt.While(condition, body);
+        body = new Stmt.While(keyword, condition, body);
 
         if (initializer != null) {
             body = new Stmt.Block(List.of(initializer, body));
@@ -264,142 +295,137 @@ public class Parser {
     }
 
     private Expr expression() {
-        return assignment();
-    }
-
-    private Expr assignment() {
-        Expr expr = ternary();
-
-        if (match(EQUAL)) {
-            var equals = previous();
-            var value = assignment();
-
-            if (expr instanceof Expr.Variable var) {
-                return new Expr.Assign(var.name(), value);
-            } else if (expr instanceof Expr.Get get) {
-                return new Expr.Set(get.target(), get.name(), value);
-            }
-
-            error(equals, "Invalid assignment target");
-        }
-
-        return expr;
-    }
-
-    private Expr ternary() {
-        var expr = or();
-
-        if (match(QUESTION_MARK)) {
-            var first = ternary();
-            consume(COLON, "':' expected");
-            var second = ternary();
-            return new Expr.Ternary(expr, first, second);
+        return parsePrecedence(ASSIGNMENT);
+    }
+
+    // binding powers, loosest first; tokens that aren't infix operators have 0
+    private static final int ASSIGNMENT = 1;
+    private static final int TERNARY = 2;
+    private static final int OR_PRECEDENCE = 3;
+    private static final int AND_PRECEDENCE = 4;
+    private static final int EQUALITY = 5;
+    private static final int COMPARISON = 6;
+    private static final int TERM = 7;
+    private static final int FACTOR = 8;
+    private static final int UNARY = 9;
+    private static final int POSTFIX = 10;
+
+    // rules get the index of the token they were picked for
+    private interface PrefixRule {
+        Expr parse(Parser parser, int token);
+    }
+
+    private interface InfixRule {
+        Expr parse(Parser parser, Expr left, int token);
+    }
+
+    private static final PrefixRule[] PREFIX = new PrefixRule[TokenType.values().length];
+    private static final InfixRule[] INFIX = new InfixRule[TokenType.values().length];
+    private static final int[] PRECEDENCE = new int[TokenType.values().length];
+
+    static {
+        prefix(NUMBER, (p, t) -> new Expr.Literal(p.tokens.literal(t)));
+        prefix(STRING, (p, t) -> new Expr.Literal(p.tokens.literal(t)));
+        prefix(TRUE, (p, t) -> new Expr.Literal(true));
+        prefix(FALSE, (p, t) -> new Expr.Literal(false));
+        prefix(NIL, (p, t) -> new Expr.Literal(null));
+        prefix(THIS, (p, t) -> new Expr.This(p.tokens.token(t)));
+        prefix(IDENTIFIER, (p, t) -> new Expr.Variable(p.tokens.token(t)));
+        prefix(SUPER, Parser::superExpression);
+        prefix(LEFT_PAREN, Parser::grouping);
+        prefix(FUN, (p, t) -> p.functionBody());
+        prefix(MINUS, Parser::unary);
+        prefix(BANG, Parser::unary);
+
+        infix(EQUAL, ASSIGNMENT, Parser::assignment);
+        infix(QUESTION_MARK, TERNARY, Parser::ternary);
+        // 'or' and 'and' group to the right
+        infix(OR, OR_PRECEDENCE, (p, left, t) -> new Expr.Logical(left, p.tokens.token(t), p.parsePrecedence(OR_PRECEDENCE)));
+        infix(AND, AND_PRECEDENCE, (p, left, t) -> new Expr.Logical(left, p.tokens.token(t), p.parsePrecedence(AND_PRECEDENCE)));
+        for (var type : List.of(EQUAL_EQUAL, BANG_EQUAL)) infix(type, EQUALITY, Parser::binary);
+        for (var type : List.of(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) infix(type, COMPARISON, Parser::binary);
+        for (var type : List.of(PLUS, MINUS)) infix(type, TERM, Parser::binary);
+        for (var type : List.of(SLASH, STAR)) infix(type, FACTOR, Parser::binary);
+        infix(LEFT_PAREN, POSTFIX, Parser::finishCall);
+        infix(DOT, POSTFIX, Parser::property);
+        infix(LEFT_BRACKET, POSTFIX, Parser::index);
+    }
+
+    private static void prefix(TokenType type, PrefixRule rule) {
+        PREFIX[type.ordinal()] = rule;
+    }
+
+    private static void infix(TokenType type, int precedence, InfixRule rule) {
+        INFIX[type.ordinal()] = rule;
+        PRECEDENCE[type.ordinal()] = precedence;
+    }
+
+    /**
+     * Parses an expression whose operators all bind at least as tightly as {@code precedence}.
+     */
+    private Expr parsePrecedence(int precedence) {
+        var prefix = PREFIX[peekType().ordinal()];
+        if (prefix == null) {
+            throw error(peek(), "Expression expected");
+        }
+
+        skip();
+        var expr = prefix.parse(this, current - 1);
+        while (precedence <= PRECEDENCE[peekType().ordinal()]) {
+            var rule = INFIX[peekType().ordinal()];
+            skip();
+            expr = rule.parse(this, expr, current - 1);
         }
 
         return expr;
     }
 
-    private Expr or() {
-        var expr = and();
+    private Expr assignment(Expr target, int equals) {
+        var value = parsePrecedence(ASSIGNMENT);
 
-        while (match(OR)) {
-            var token = previous();
-            var right = or();
-            expr = new Expr.Logical(expr, token, right);
+        if (target instanceof Expr.Variable var) {
+            return new Expr.Assign(var.name(), value);
+        } else if (target instanceof Expr.Get get) {
+            return new Expr.Set(get.target(), get.name(), value);
+        } else if (target instanceof Expr.Index index) {
+            return new Expr.SetIndex(index.target(), index.bracket(), index.index(), value);
         }
-        return expr;
-    }
-
-    private Expr and() {
-        var expr = equality();
 
-        while (match(AND)) {
-            var token = previous();
-            var right = and();
-            expr = new Expr.Logical(expr, token, right);
-        }
-        return expr;
+        error(tokens.token(equals), "Invalid assignment target");
+        return target;
     }
 
-    private Expr equality() {
-        var expr = comparison();
-
-        while (match(EQUAL_EQUAL, BANG_EQUAL)) {
-            Token op = previous();
-            var right = comparison();
-
-            expr = new Expr.Binary(expr, op, right);
-        }
-
-        return expr;
-    }
-
-    private Expr comparison() {
-        var expr = term();
-
-        while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
-            Token op = previous();
-            var right = term();
-
-            expr = new Expr.Binary(expr, op, right);
-        }
-
-        return expr;
+    private Expr ternary(Expr condition, int question) {
+        var first = parsePrecedence(TERNARY);
+        consume(COLON, "':' expected");
+        var second = parsePrecedence(TERNARY);
+        return new Expr.Ternary(condition, first, second);
     }
 
-    private Expr term() {
-        var expr = factor();
-
-        while (match(PLUS, MINUS)) {
-            Token op = previous();
-            var right = factor();
-
-            expr = new Expr.Binary(expr, op, right);
-        }
-
-        return expr;
+    private Expr binary(Expr left, int op) {
+        var operator = tokens.token(op);
+        var right = parsePrecedence(PRECEDENCE[operator.type.ordinal()] + 1);
+        return new Expr.Binary(left, operator, right);
     }
 
-    private Expr factor() {
-        var expr = unary();
-
-        while (match(SLASH, STAR)) {
-            Token op = previous();
-            var right = unary();
-
-            expr = new Expr.Binary(expr, op, right);
-        }
-
-        return expr;
+    private Expr unary(int op) {
+        var operator = tokens.token(op);
+        var right = parsePrecedence(UNARY);
+        return new Expr.Unary(operator, right);
     }
 
-    private Expr unary() {
-        if (match(SLASH, MINUS)) {
-            var op = previous();
-            var right = unary();
-            return new Expr.Unary(op, right);
-        }
-
-        return call();
+    private Expr property(Expr target, int dot) {
+        var name = consume(IDENTIFIER, "Expected identifier after '.'");
+        return new Expr.Get(target, name);
     }
 
-    private Expr call() {
-        Expr expr = primary();
-        while (true) {
-            if (match(LEFT_PAREN)) {
-                expr = finishCall(expr);
-            } else if (match(DOT)) {
-                var name = consume(IDENTIFIER, "Expected identifier after '.'");
-                expr = new Expr.Get(expr, name);
-            } else {
-                break;
-            }
-        }
-
-        return expr;
+    private Expr index(Expr target, int open) {
+        var index = expression();
+        var bracket = consume(RIGHT_BRACKET, "Expected ']' after index");
+        return new Expr.Index(target, bracket, index);
     }
 
-    private Expr finishCall(Expr target) {
+    private Expr finishCall(Expr target, int open) {
         List<Expr> args = new ArrayList<>();
         while (!check(RIGHT_PAREN)) {
             do {
@@ -414,48 +440,42 @@ public class Parser {
         return new Expr.Call(target, paren, args);
     }
 
-    private Expr primary() {
-        if (match(TRUE)) return new Expr.Literal(true);
-        if (match(FALSE)) return new Expr.Literal(false);
-        if (match(NIL)) return new Expr.Literal(null);
-        if (match(THIS)) return new Expr.This(previous());
-        if (match(SUPER)) {
-            var keyword = previous();
-            consume(DOT, "Expected '.' after 'super'");
-            var method = consume(IDENTIFIER, "Expected identifier after '.'");
-
-            return new Expr.Super(keyword, method);
-        }
-
-        if (match(NUMBER, STRING)) return new Expr.Literal(previous().literal);
+    private Expr superExpression(int keyword) {
+        var token = tokens.token(keyword);
+        consume(DOT, "Expected '.' after 'super'");
+        var method = consume(IDENTIFIER, "Expected identifier after '.'");
 
-        if (match(LEFT_PAREN)) {
-            var expr = expression();
-            consume(RIGHT_PAREN, "Expected ')' after expression");
-            return new Expr.Grouping(expr);
-        }
-
-        if (match(IDENTIFIER)) {
-            return new Expr.Variable(previous());
-        }
-        if (match(FUN)) {
-            return functionBody();
-        }
+        return new Expr.Super(token, method);
+    }
 
-        throw error(peek(), "Expression expected");
+    private Expr grouping(int paren) {
+        var expr = expression();
+        consume(RIGHT_PAREN, "Expected ')' after expression");
+        return new Expr.Grouping(expr);
     }
 
     private Token consume(TokenType type, String errorMsg) {
-        if (check(type)) return advance();
+        if (check(type)) {
+            skip();
+            return previous();
+        }
 
         throw error(peek(), errorMsg);
     }
 
 
+    private boolean match(TokenType type) {
+        if (check(type)) {
+            skip();
+            return true;
+        }
+        return false;
+    }
+
     private boolean match(TokenType... types) {
         for (var type : types) {
             if (check(type)) {
-                advance();
+                skip();
                 return true;
             }
         }
@@ -465,24 +485,32 @@ public class Parser {
 
     private boolean check(TokenType type) {
         if (isAtEnd()) return false;
-        return peek().type == type;
+        return peekType() == type;
     }
 
     private boolean checkNext(TokenType type) {
         if (isAtEnd() || isAtEnd(current + 1)) return false;
-        return tokens.get(current + 1).type == type;
+        return tokens.type(current + 1) == type;
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.token(current - 1);
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokens.token(current);
     }
 
-    private Token advance() {
+    private TokenType peekType() {
+        return tokens.type(current);
+    }
+
+    private void skip() {
         if (!isAtEnd()) current++;
+    }
+
+    private Token advance() {
+        skip();
         return previous();
     }
 
@@ -496,7 +524,7 @@ public class Parser {
     }
 
     private ParseError error(Token token, String errorMsg) {
-        Lox.error(token, errorMsg);
+        reporter.error(token, errorMsg);
 
         return new ParseError();
     }
@@ -0,0 +1,20 @@
+package com.interpreters.lox;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The output of the front end: parsed statements plus the resolutions computed by the {@link Resolver}. A use
+ * site resolves to the scope depth of a local, or to {@code -1 - i} for the global named {@code globals[i]}.
+ * Nothing in here is mutated once constructed, so a single program can be executed by any number
+ * of {@link LoxRuntime}s, including concurrently.
+ */
+public record Program(List<Stmt> statements, Map<Expr, Integer> locals, List<String> globals) {
+
+    public Program {
+        statements = Collections.unmodifiableList(statements);
+        locals = Collections.unmodifiableMap(locals);
+        globals = List.copyOf(globals);
+    }
+}
@@ -1,5 +1,6 @@
 package com.interpreters.lox;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -8,7 +9,13 @@ import java.util.Stack;
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     private final Stack<Map<String, Boolean>> scopes = new Stack<>();
-    private final Interpreter interpreter;
+    // the depth of a resolved local, or -1 - the global's index in globals
+    private final Map<Expr, Integer> locals = new HashMap<>();
+    private final List<String> globals = new ArrayList<>();
+    private final Map<String, Integer> globalIndexes = new HashMap<>();
+    private final ErrorReporter reporter;
+    // dispatch on node types with the generated switch instead of accept
+    private final boolean switchDispatch;
     private FunctionType currentFunction = FunctionType.NONE;
     private ClassType currentClass = ClassType.NONE;
 
@@ -20,8 +27,21 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         CLASS, SUBCLASS, NONE
     }
 
-    public Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+    public Resolver(ErrorReporter reporter) {
+        this(reporter, false);
+    }
+
+    public Resolver(ErrorReporter reporter, boolean switchDispatch) {
+        this.reporter = reporter;
+        this.switchDispatch = switchDispatch;
+    }
+
+    public Map<Expr, Integer> getLocals() {
+        return locals;
+    }
+
+    public List<String> getGlobals() {
+        return globals;
     }
 
     @Override
@@ -61,7 +81,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visit(Expr.Variable expr) {
         var name = expr.name().lexeme;
         if (!scopes.isEmpty() && scopes.peek().get(name) == Boolean.FALSE) {
-            Lox.error(expr.name(), "Variable %s is accessed in its initializer".formatted(name));
+            reporter.error(expr.name(), "Variable %s is accessed in its initializer".formatted(name));
         }
 
         resolveLocal(expr, expr.name());
@@ -109,10 +129,25 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visit(Expr.Index expr) {
+        resolve(expr.target());
+        resolve(expr.index());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expr.SetIndex expr) {
+        resolve(expr.target());
+        resolve(expr.index());
+        resolve(expr.value());
+        return null;
+    }
+
     @Override
     public Void visit(Expr.This expr) {
         if (currentClass == ClassType.NONE) {
-            Lox.error(expr.keyword(), "'this' can only be used inside a class method");
+            reporter.error(expr.keyword(), "'this' can only be used inside a class method");
         }
         resolveLocal(expr, expr.keyword());
         return null;
@@ -121,16 +156,35 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visit(Expr.Super expr) {
         if (currentClass == ClassType.NONE) {
-            Lox.error(expr.keyword(), "'super' can only be used inside classes");
+            reporter.error(expr.keyword(), "'super' can only be used inside classes");
         }
         if (currentClass == ClassType.CLASS) {
-            Lox.error(expr.keyword(), "'super' used in a class that does not have a superclass");
+            reporter.error(expr.keyword(), "'super' used in a class that does not have a superclass");
         }
 
         resolveLocal(expr, expr.keyword());
         return null;
     }
 
+    // fused nodes only appear after resolution, but resolve like the nodes they replace
+    @Override
+    public Void visit(Expr.Increment expr) {
+        resolve(expr.original());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expr.CompareConstant expr) {
+        resolve(expr.original());
+        return null;
+    }
+
+    @Override
+    public Void visit(Expr.CompoundAssign expr) {
+        resolve(expr.original());
+        return null;
+    }
+
     @Override
     public Void visit(Stmt.Expression stmt) {
         resolve(stmt.expr());
@@ -140,7 +194,9 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visit(Stmt.VarDeclaration stmt) {
         declare(stmt.name());
-        resolve(stmt.initializer());
+        if (stmt.initializer() != null) {
+            resolve(stmt.initializer());
+        }
         define(stmt.name());
         return null;
     }
@@ -226,11 +282,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visit(Stmt.Return stmt) {
         if (currentFunction == FunctionType.NONE) {
-            Lox.error(stmt.keyword(), "Can't return from top-level code");
+            reporter.error(stmt.keyword(), "Can't return from top-level code");
         }
         if (stmt.value() != null) {
             if (currentFunction == FunctionType.INITIALIZER) {
-                Lox.error(stmt.keyword(), "Can't return from an initializer");
+                reporter.error(stmt.keyword(), "Can't return from an initializer");
             }
 
             resolve(stmt.value());
@@ -253,20 +309,35 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     }
 
     private void resolve(Stmt stmt) {
-        stmt.accept(this);
+        if (switchDispatch) {
+            Stmt.dispatch(stmt, this);
+        } else {
+            stmt.accept(this);
+        }
     }
 
     private void resolve(Expr expr) {
-        expr.accept(this);
+        if (switchDispatch) {
+            Expr.dispatch(expr, this);
+        } else {
+            expr.accept(this);
+        }
     }
 
     private void resolveLocal(Expr expr, Token name) {
         for (int i = scopes.size() - 1; i >= 0; i--) {
             var env = scopes.get(i);
             if (env.containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - i - 1);
+                locals.put(expr, scopes.size() - i - 1);
+                return;
             }
         }
+        // every use of a global gets the same index, so the optimizer can still tell uses of one variable
+        int index = globalIndexes.computeIfAbsent(name.lexeme, key -> {
+            globals.add(key);
+            return globals.size() - 1;
+        });
+        locals.put(expr, -1 - index);
     }
 
     private void declare(Token name) {
@@ -274,7 +345,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         var scope = scopes.peek();
         if (scope.containsKey(name.lexeme)) {
-            Lox.error(name, "Already have a variable named '%s' in this scope".formatted(name.lexeme));
+            reporter.error(name, "Already have a variable named '%s' in this scope".formatted(name.lexeme));
         }
         scope.put(name.lexeme, false); // not initialized yet
     }
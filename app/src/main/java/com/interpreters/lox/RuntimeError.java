@@ -4,6 +4,14 @@ public class RuntimeError extends RuntimeException {
     private Token token;
     private String message;
 
+    /**
+     * For errors raised inside native functions, which don't know their call site.
+     * The interpreter attaches the token of the call before reporting it.
+     */
+    public RuntimeError(String message) {
+        this(null, message);
+    }
+
     public RuntimeError(Token token, String message) {
         this.token = token;
         this.message = message;
@@ -2,199 +2,365 @@ package com.interpreters.lox;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.function.Predicate;
 
 import static com.interpreters.lox.TokenType.*;
-import static java.util.Map.entry;
 
+/**
+ * Table-driven scanner: every ASCII character maps to a class that selects the scanning routine, runs of
+ * whitespace, comment text, identifier characters and string bodies are skipped in tight loops over a char array,
+ * and reserved words are found with a perfect hash instead of a map lookup.
+ */
 public class Scanner {
 
+    // character classes; anything outside ASCII is OTHER
+    private static final byte OTHER = 0;
+    private static final byte SPACE = 1;
+    private static final byte NEWLINE = 2;
+    private static final byte DIGIT = 3;
+    private static final byte ALPHA = 4;
+    private static final byte SINGLE = 5;   // always a one-character token
+    private static final byte EQUALS = 6;   // one character, or two with a following '='
+    private static final byte SLASH_OR_COMMENT = 7;
+    private static final byte QUOTE = 8;
+
+    private static final byte[] CLASSES = new byte[128];
+    private static final TokenType[] ONE_CHAR = new TokenType[128];
+    private static final TokenType[] WITH_EQUAL = new TokenType[128];
+    // lexemes of operators and punctuation, shared by all tokens
+    private static final String[] ONE_CHAR_LEXEMES = new String[128];
+    private static final String[] WITH_EQUAL_LEXEMES = new String[128];
+
+    // keywords are looked up by (first char + 7 * last char + length) & 31, which has no collisions among them
+    private static final String[] KEYWORDS = new String[32];
+    private static final TokenType[] KEYWORD_TYPES = new TokenType[32];
+
+    static {
+        CLASSES[' '] = CLASSES['\r'] = CLASSES['\t'] = SPACE;
+        CLASSES['\n'] = NEWLINE;
+        CLASSES['"'] = QUOTE;
+        CLASSES['_'] = ALPHA;
+        for (char c = '0'; c <= '9'; c++) CLASSES[c] = DIGIT;
+        for (char c = 'a'; c <= 'z'; c++) CLASSES[c] = ALPHA;
+        for (char c = 'A'; c <= 'Z'; c++) CLASSES[c] = ALPHA;
+
+        single('{', LEFT_BRACE);
+        single('}', RIGHT_BRACE);
+        single('(', LEFT_PAREN);
+        single(')', RIGHT_PAREN);
+        single('[', LEFT_BRACKET);
+        single(']', RIGHT_BRACKET);
+        single('+', PLUS);
+        single('-', MINUS);
+        single('*', STAR);
+        single(';', SEMICOLON);
+        single('.', DOT);
+        single('?', QUESTION_MARK);
+        single(':', COLON);
+        single(',', COMMA);
+        single('/', SLASH);
+        CLASSES['/'] = SLASH_OR_COMMENT; // '//' starts a comment
+
+        withEqual('!', BANG, BANG_EQUAL);
+        withEqual('>', GREATER, GREATER_EQUAL);
+        withEqual('<', LESS, LESS_EQUAL);
+        withEqual('=', EQUAL, EQUAL_EQUAL);
+
+        keyword("and", AND);
+        keyword("or", OR);
+        keyword("class", CLASS);
+        keyword("else", ELSE);
+        keyword("true", TRUE);
+        keyword("false", FALSE);
+        keyword("for", FOR);
+        keyword("fun", FUN);
+        keyword("if", IF);
+        keyword("nil", NIL);
+        keyword("print", PRINT);
+        keyword("return", RETURN);
+        keyword("super", SUPER);
+        keyword("this", THIS);
+        keyword("var", VAR);
+        keyword("while", WHILE);
+        keyword("break", BREAK);
+    }
+
+    private static void single(char c, TokenType type) {
+        CLASSES[c] = SINGLE;
+        ONE_CHAR[c] = type;
+        ONE_CHAR_LEXEMES[c] = String.valueOf(c);
+    }
+
+    private static void withEqual(char c, TokenType alone, TokenType withEqual) {
+        CLASSES[c] = EQUALS;
+        ONE_CHAR[c] = alone;
+        WITH_EQUAL[c] = withEqual;
+        ONE_CHAR_LEXEMES[c] = String.valueOf(c);
+        WITH_EQUAL_LEXEMES[c] = c + "=";
+    }
+
+    private static void keyword(String word, TokenType type) {
+        int slot = keywordHash(word.charAt(0), word.charAt(word.length() - 1), word.length());
+        if (KEYWORDS[slot] != null) {
+            throw new IllegalStateException("Keyword hash collision: " + word + ", " + KEYWORDS[slot]);
+        }
+        KEYWORDS[slot] = word;
+        KEYWORD_TYPES[slot] = type;
+    }
+
+    private static int keywordHash(char first, char last, int length) {
+        return (first + 7 * last + length) & 31;
+    }
+
+    // null when scanning parts of a shared array, whose tokens only make sense merged
     private final String source;
-    private int start, current, line;
+    private final char[] chars;
+    private final int length;
+    private final ErrorReporter reporter;
+    private int current, line;
+    // exactly one of these collects the tokens of the current scan
     private List<Token> tokens;
+    private TokenBuffer buffer;
+    // direct-mapped cache of recent identifier and number lexemes, so repeated names share one String
+    private final String[] lexemes = new String[1024];
+
+    Scanner(String source, ErrorReporter reporter) {
+        this(source, source.toCharArray(), reporter);
+    }
 
-    private Map<String, TokenType> RESERVED_WORDS = reservedWordsMap();
+    // scanners over parts of one source share its characters
+    Scanner(char[] chars, ErrorReporter reporter) {
+        this(null, chars, reporter);
+    }
 
-    Scanner(String source) {
+    private Scanner(String source, char[] chars, ErrorReporter reporter) {
         this.source = source;
-        this.start = 0;
+        this.chars = chars;
+        this.length = chars.length;
+        this.reporter = reporter;
         this.current = 0;
         this.line = 1;
     }
 
     public List<Token> scan() {
+        tokens = new ArrayList<>(length / 4);
+        while (current < length) {
+            scanToken();
+        }
+
+        tokens.add(new Token(EOF, "", null, line, current));
+        return tokens;
+    }
+
+    /**
+     * Scans the whole source like {@link #scan()}, into a {@link TokenBuffer} instead of a list of tokens.
+     */
+    public TokenBuffer scanBuffer() {
+        buffer = new TokenBuffer(source, length / 4);
+        while (current < length) {
+            scanToken();
+        }
+
+        buffer.add(EOF, current, 0, line);
+        return buffer;
+    }
+
+    /**
+     * Scans from {@code offset}, which must be where an earlier scan started a token, on {@code line}, until
+     * {@code resync} accepts a newly scanned token. Returns the tokens before the accepted one, or all of them up
+     * to and including EOF if none was accepted.
+     */
+    List<Token> rescan(int offset, int line, Predicate<Token> resync) {
         tokens = new ArrayList<>();
-        while (!isAtEnd()) {
-            start = current;
+        this.current = offset;
+        this.line = line;
+
+        while (current < length) {
+            int scanned = tokens.size();
             scanToken();
+            if (tokens.size() > scanned && resync.test(tokens.get(scanned))) {
+                tokens.remove(scanned);
+                return tokens;
+            }
         }
 
-        tokens.add(new Token(EOF, "", null, line));
+        tokens.add(new Token(EOF, "", null, this.line, current));
         return tokens;
     }
 
-    private boolean isAtEnd() {
-        return current >= source.length();
+    /**
+     * Scans tokens starting at {@code from}, which must be at the start of a line outside any string, as if it
+     * were line 1, until reaching {@code to}. A string that is open at {@code to} is scanned to its end, so
+     * {@link #position()} may end up past {@code to}.
+     */
+    TokenBuffer scanChunk(int from, int to) {
+        buffer = new TokenBuffer(source, (to - from) / 4);
+        this.current = from;
+        this.line = 1;
+
+        while (current < to) {
+            scanToken();
+        }
+        return buffer;
     }
 
-    // identifiers, reserved words
+    int position() {
+        return current;
+    }
 
+    int line() {
+        return line;
+    }
 
     private void scanToken() {
-        char c = advance();
-
-        switch (c) {
-            case '{' -> addToken(LEFT_BRACE);
-            case '}' -> addToken(RIGHT_BRACE);
-            case '(' -> addToken(LEFT_PAREN);
-            case ')' -> addToken(RIGHT_PAREN);
-            case '+' -> addToken(PLUS);
-            case '-' -> addToken(MINUS);
-            case '*' -> addToken(STAR);
-            case '/' -> {
-                if (peek() == '/') {
-                    while (peek() != '\n') {
-                        advance();
-                    }
+        int start = current;
+        char c = chars[current++];
+
+        switch (c < 128 ? CLASSES[c] : OTHER) {
+            case SPACE -> skipSpaces();
+            case NEWLINE -> line++;
+            case SINGLE -> add(ONE_CHAR[c], ONE_CHAR_LEXEMES[c], start);
+            case EQUALS -> {
+                if (current < length && chars[current] == '=') {
+                    current++;
+                    add(WITH_EQUAL[c], WITH_EQUAL_LEXEMES[c], start);
                 } else {
-                    addToken(SLASH);
+                    add(ONE_CHAR[c], ONE_CHAR_LEXEMES[c], start);
                 }
             }
-            case ';' -> addToken(SEMICOLON);
-            case '.' -> addToken(DOT);
-            case '?' -> addToken(QUESTION_MARK);
-            case ':' -> addToken(COLON);
-            case ',' -> addToken(COMMA);
-            case '!' -> addToken(match('=') ? BANG_EQUAL : BANG);
-            case '>' -> addToken(match('=') ? GREATER_EQUAL : GREATER);
-            case '<' -> addToken(match('=') ? LESS_EQUAL : LESS);
-            case '=' -> addToken(match('=') ? EQUAL_EQUAL : EQUAL);
-            case ' ', '\r', '\t' -> {}
-            case '"' -> string();
-            case '\n' -> line++;
-            default -> {
-                if (isDigit(c)) {
-                    number();
-                } else if (isAlpha(c)) {
-                    identifier();
-                }
-                else {
-                    Lox.error(line, "Unexpected character: " + c);
+            case SLASH_OR_COMMENT -> {
+                if (current < length && chars[current] == '/') {
+                    skipComment();
+                } else {
+                    add(SLASH, ONE_CHAR_LEXEMES['/'], start);
                 }
             }
+            case QUOTE -> string(start);
+            case DIGIT -> number(start);
+            case ALPHA -> identifier(start);
+            default -> reporter.error(line, "Unexpected character: " + c);
         }
     }
 
-    private void string() {
-        while (peek() != '"' && !isAtEnd()) {
-            if (peek() == '\n') {
-                line++;
-            }
-            advance();
+    // adds a token without a literal whose lexeme runs from start to current
+    private void add(TokenType type, String lexeme, int start) {
+        if (buffer != null) {
+            buffer.add(type, start, current - start, line);
+        } else {
+            tokens.add(new Token(type, lexeme, null, line, start));
         }
+    }
 
-        if (isAtEnd()) {
-            Lox.error(line, "Unterminated string: ");
-            return;
+    private void skipSpaces() {
+        int i = current;
+        while (i < length) {
+            char c = chars[i];
+            if (c >= 128 || CLASSES[c] != SPACE) break;
+            i++;
         }
-
-
-        assert source.charAt(current) == '"';
-        advance();
-
-        var val = source.substring(start + 1, current - 1);
-        addToken(STRING, val);
+        current = i;
     }
 
-    private void number() {
-        while (isDigit(peek())) advance();
-
-        if (peek() == '.' && isDigit(peekNext())) {
-            advance();
-
-            while (isDigit(peek())) {
-                advance();
-            }
+    // leaves the newline for scanToken, which counts it
+    private void skipComment() {
+        int i = current;
+        while (i < length && chars[i] != '\n') {
+            i++;
         }
-
-        var value = Double.parseDouble(source.substring(start, current));
-        addToken(NUMBER, value);
+        current = i;
     }
 
-    private void identifier() {
+    private void string(int start) {
+        int i = current;
+        int newlines = 0;
+        char c;
+        while (i < length && (c = chars[i]) != '"') {
+            if (c == '\n') newlines++;
+            i++;
+        }
+        line += newlines;
+        current = i;
 
-        while (isAlphaNumeric(peek())) advance();
+        if (i >= length) {
+            reporter.error(line, "Unterminated string: ");
+            return;
+        }
 
-        String text = source.substring(start, current);
-        var tokenType = Optional.ofNullable(RESERVED_WORDS.get(text)).orElse(IDENTIFIER);
-        addToken(tokenType);
+        current++;
+        if (buffer != null) {
+            buffer.add(STRING, start, current - start, line);
+            return;
+        }
+        var value = new String(chars, start + 1, i - start - 1);
+        tokens.add(new Token(STRING, new String(chars, start, current - start), value, line, start));
     }
 
-    private void addToken(TokenType type) {
-        addToken(type, null);
-    }
+    private void number(int start) {
+        int i = current;
+        while (i < length && isDigit(chars[i])) i++;
 
-    private void addToken(TokenType type, Object literal) {
-        var text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
-    }
+        boolean fraction = i + 1 < length && chars[i] == '.' && isDigit(chars[i + 1]);
+        if (fraction) {
+            i += 2;
+            while (i < length && isDigit(chars[i])) i++;
+        }
+        current = i;
+        if (buffer != null) {
+            buffer.add(NUMBER, start, i - start, line);
+            return;
+        }
 
-    private char advance() {
-        return source.charAt(current++);
+        var text = lexeme(start, i - start);
+        // integers short enough to be exact as a double don't need the general parser
+        double value = !fraction && text.length() <= 15 ? (double) Long.parseLong(text) : Double.parseDouble(text);
+        tokens.add(new Token(NUMBER, text, value, line, start));
     }
 
-    private char peek() {
-        if (isAtEnd()) return '\0';
-        return source.charAt(current);
+    private void identifier(int start) {
+        int i = current;
+        while (i < length) {
+            char c = chars[i];
+            if (c >= 128 || (CLASSES[c] != ALPHA && CLASSES[c] != DIGIT)) break;
+            i++;
+        }
+        current = i;
+
+        int size = i - start;
+        int slot = keywordHash(chars[start], chars[i - 1], size);
+        var keyword = KEYWORDS[slot];
+        if (keyword != null && keyword.length() == size && matches(keyword, start)) {
+            add(KEYWORD_TYPES[slot], keyword, start);
+        } else if (buffer != null) {
+            buffer.add(IDENTIFIER, start, size, line);
+        } else {
+            tokens.add(new Token(IDENTIFIER, lexeme(start, size), null, line, start));
+        }
     }
 
-    private char peekNext() {
-        if (current + 1 >= source.length()) return '\0';
-        return source.charAt(current + 1);
-    }
+    private String lexeme(int start, int size) {
+        int hash = size;
+        for (int i = start; i < start + size; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (lexemes.length - 1);
 
-    private boolean match(char c) {
-        if (isAtEnd()) return false;
-        if (source.charAt(current) != c) return false;
+        var cached = lexemes[slot];
+        if (cached != null && cached.length() == size && matches(cached, start)) {
+            return cached;
+        }
+        var text = new String(chars, start, size);
+        lexemes[slot] = text;
+        return text;
+    }
 
-        current++;
+    private boolean matches(String word, int start) {
+        for (int i = 0; i < word.length(); i++) {
+            if (chars[start + i] != word.charAt(i)) return false;
+        }
         return true;
     }
 
-    private boolean isDigit(char c) {
+    private static boolean isDigit(char c) {
         return c >= '0' && c <= '9';
     }
-
-    private boolean isAlpha(char c) {
-        return (c >= 'A' && c <= 'Z')
-                || (c >= 'a' && c <= 'z')
-                || c == '_';
-    }
-
-    private boolean isAlphaNumeric(char c) {
-        return isAlpha(c) || isDigit(c);
-    }
-
-
-    private static Map<String, TokenType> reservedWordsMap() {
-        return Map.ofEntries(entry("and", AND),
-                entry("or", OR),
-                entry("class", CLASS),
-                entry("else", ELSE),
-                entry("true", TRUE),
-                entry("false", FALSE),
-                entry("for", FOR),
-                entry("fun", FUN),
-                entry("if", IF),
-                entry("nil", NIL),
-                entry("print", PRINT),
-                entry("return", RETURN),
-                entry("super", SUPER),
-                entry("this", THIS),
-                entry("var", VAR),
-                entry("while", WHILE),
-                entry("break", BREAK)
-        );
-    }
 }
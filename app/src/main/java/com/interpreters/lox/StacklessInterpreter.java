@@ -0,0 +1,444 @@
+package com.interpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An interpreter that keeps its continuation on the heap instead of the Java stack. Pending work is a stack of
+ * (node, phase) pairs and intermediate results a stack of values; a call into a Lox function pushes a frame and
+ * its body rather than recursing, so recursion depth is bounded by {@code maxDepth} and the heap only.
+ * <p>
+ * Natives that call back into Lox (array {@code map}, {@code bench}, ...) still re-enter through
+ * {@link #executeBlock}, which runs a nested loop on top of the same stacks. Leaf nodes and declarations are
+ * delegated to the tree-walking visitor.
+ */
+public class StacklessInterpreter extends Interpreter {
+    public static final int DEFAULT_MAX_DEPTH = 1_000_000;
+
+    // phases: what to do when a node is popped
+    private static final byte EVAL = 0;
+    private static final byte APPLY = 1;        // operands are on the value stack
+    private static final byte SECOND = 2;       // second operand stage of Set and SetIndex
+    private static final byte LOOP_TEST = 3;    // while condition is on the value stack
+    private static final byte LOOP_BODY = 4;    // body finished, back-edge of a while
+    private static final byte RESTORE_ENV = 5;  // node is the environment to go back to
+    private static final byte FRAME = 6;        // node is the LoxFunction whose body just finished
+
+    private final int maxDepth;
+
+    private Object[] nodes = new Object[256];
+    private byte[] phases = new byte[256];
+    private int top;
+    private Object[] values = new Object[256];
+    private int valueTop;
+    private int depth;
+    // bottom of the innermost run(); return and break don't unwind past it
+    private int runBase;
+
+    public StacklessInterpreter(OutputSink out, ErrorReporter reporter, int maxDepth) {
+        super(out, reporter);
+        this.maxDepth = maxDepth;
+    }
+
+    private StacklessInterpreter(StacklessInterpreter parent) {
+        super(parent);
+        this.maxDepth = parent.maxDepth;
+    }
+
+    @Override
+    Interpreter fork() {
+        return new StacklessInterpreter(this);
+    }
+
+    @Override
+    Object eval(Expr expr) {
+        int base = top;
+        push(expr, EVAL);
+        run(base);
+        return popValue();
+    }
+
+    @Override
+    void execute(Stmt statement) {
+        int base = top;
+        push(statement, EVAL);
+        run(base);
+    }
+
+    @Override
+    public void executeBlock(List<Stmt> statements, Environment environment) {
+        var original = env;
+        int base = top;
+        push(env, RESTORE_ENV);
+        pushAll(statements);
+        env = environment;
+        try {
+            run(base);
+        } finally {
+            env = original;
+        }
+    }
+
+    private void run(int base) {
+        int savedBase = runBase;
+        int valueBase = valueTop;
+        int savedDepth = depth;
+        var savedEnv = env;
+        boolean completed = false;
+
+        runBase = base;
+        try {
+            while (top > base) {
+                var node = nodes[--top];
+                nodes[top] = null;
+                byte phase = phases[top];
+
+                if (phase != EVAL) {
+                    resume(node, phase);
+                } else if (node instanceof Expr expr) {
+                    evaluate(expr);
+                } else {
+                    perform((Stmt) node);
+                }
+            }
+            completed = true;
+        } finally {
+            runBase = savedBase;
+            if (!completed) {
+                Arrays.fill(nodes, base, top, null);
+                top = base;
+                Arrays.fill(values, valueBase, valueTop, null);
+                valueTop = valueBase;
+                depth = savedDepth;
+                env = savedEnv;
+            }
+        }
+    }
+
+    private void evaluate(Expr expr) {
+        switch (expr) {
+            case Expr.Literal e -> pushValue(e.value());
+            case Expr.Grouping e -> push(e.expression(), EVAL);
+            case Expr.Binary e -> {
+                push(e, APPLY);
+                push(e.right(), EVAL);
+                push(e.left(), EVAL);
+            }
+            case Expr.Unary e -> {
+                push(e, APPLY);
+                push(e.right(), EVAL);
+            }
+            case Expr.Logical e -> {
+                push(e, APPLY);
+                push(e.left(), EVAL);
+            }
+            case Expr.Ternary e -> {
+                push(e, APPLY);
+                push(e.condition(), EVAL);
+            }
+            case Expr.Assign e -> {
+                push(e, APPLY);
+                push(e.value(), EVAL);
+            }
+            case Expr.Call e -> {
+                push(e, APPLY);
+                for (int i = e.args().size() - 1; i >= 0; i--) {
+                    push(e.args().get(i), EVAL);
+                }
+                push(e.target(), EVAL);
+            }
+            case Expr.Get e -> {
+                push(e, APPLY);
+                push(e.target(), EVAL);
+            }
+            case Expr.Set e -> {
+                push(e, APPLY);
+                push(e.target(), EVAL);
+            }
+            case Expr.Index e -> {
+                push(e, APPLY);
+                push(e.index(), EVAL);
+                push(e.target(), EVAL);
+            }
+            case Expr.SetIndex e -> {
+                push(e, APPLY);
+                push(e.target(), EVAL);
+            }
+            case Expr.CompoundAssign e -> {
+                var operation = (Expr.Binary) e.original().value();
+                pushValue(lookUpVariable(operation.left(), e.original().name()));
+                push(e, APPLY);
+                push(operation.right(), EVAL);
+            }
+            // variables, this, super, function literals and the other fused nodes don't evaluate subexpressions
+            // beyond literals
+            default -> pushValue(expr.accept(this));
+        }
+    }
+
+    private void perform(Stmt stmt) {
+        switch (stmt) {
+            case Stmt.Expression s -> {
+                push(s, APPLY);
+                push(s.expr(), EVAL);
+            }
+            case Stmt.Print s -> {
+                push(s, APPLY);
+                push(s.expr(), EVAL);
+            }
+            case Stmt.VarDeclaration s -> {
+                if (s.initializer() == null) {
+                    env.define(s.name().lexeme, null);
+                } else {
+                    push(s, APPLY);
+                    push(s.initializer(), EVAL);
+                }
+            }
+            case Stmt.Block s -> {
+                push(env, RESTORE_ENV);
+                pushAll(s.statements());
+                env = new Environment(env);
+            }
+            case Stmt.If s -> {
+                push(s, APPLY);
+                push(s.condition(), EVAL);
+            }
+            case Stmt.While s -> {
+                push(s, LOOP_TEST);
+                push(s.condition(), EVAL);
+            }
+            case Stmt.Break s -> unwindLoop();
+            case Stmt.Return s -> {
+                if (s.value() == null) {
+                    unwindCall(null);
+                } else {
+                    push(s, APPLY);
+                    push(s.value(), EVAL);
+                }
+            }
+            // function and class declarations only evaluate a superclass name
+            default -> stmt.accept(this);
+        }
+    }
+
+    private void resume(Object node, byte phase) {
+        switch (phase) {
+            case APPLY -> apply(node);
+            case SECOND -> second(node);
+            case LOOP_TEST -> {
+                var loop = (Stmt.While) node;
+                if (isTruthy(popValue())) {
+                    push(loop, LOOP_BODY);
+                    push(loop.body(), EVAL);
+                }
+            }
+            case LOOP_BODY -> {
+                var loop = (Stmt.While) node;
+                safepoint(loop.keyword());
+                push(loop, LOOP_TEST);
+                push(loop.condition(), EVAL);
+            }
+            case RESTORE_ENV -> env = (Environment) node;
+            case FRAME -> {
+                depth--;
+                pushValue(result((LoxFunction) node, null));
+            }
+            default -> throw new IllegalStateException("Unknown phase " + phase);
+        }
+    }
+
+    private void apply(Object node) {
+        switch (node) {
+            case Expr.Binary e -> {
+                var right = popValue();
+                var left = popValue();
+                pushValue(binary(e, left, right));
+            }
+            case Expr.Unary e -> pushValue(unary(e, popValue()));
+            case Expr.Logical e -> {
+                var left = popValue();
+                if ((e.operator().type == TokenType.OR && isTruthy(left)) ||
+                        (e.operator().type == TokenType.AND && !isTruthy(left))) {
+                    pushValue(left);
+                } else {
+                    push(e.right(), EVAL);
+                }
+            }
+            case Expr.Ternary e -> push(isTruthy(popValue()) ? e.first() : e.second(), EVAL);
+            case Expr.Assign e -> pushValue(assign(e, popValue()));
+            case Expr.CompoundAssign e -> {
+                var right = popValue();
+                var current = popValue();
+                pushValue(assign(e.original(), binary((Expr.Binary) e.original().value(), current, right)));
+            }
+            case Expr.Call e -> call(e);
+            case Expr.Get e -> pushValue(getProperty(e, popValue()));
+            case Expr.Set e -> {
+                pushValue(instance(e, popValue()));
+                push(e, SECOND);
+                push(e.value(), EVAL);
+            }
+            case Expr.Index e -> {
+                var index = popValue();
+                var target = popValue();
+                pushValue(indexable(e.bracket(), target).getIndex(e.bracket(), index));
+            }
+            case Expr.SetIndex e -> {
+                pushValue(indexable(e.bracket(), popValue()));
+                push(e, SECOND);
+                push(e.value(), EVAL);
+                push(e.index(), EVAL);
+            }
+            case Stmt.Expression s -> popValue();
+            case Stmt.Print s -> print(popValue());
+            case Stmt.VarDeclaration s -> env.define(s.name().lexeme, popValue());
+            case Stmt.If s -> {
+                if (isTruthy(popValue())) {
+                    push(s.thenClause(), EVAL);
+                } else if (s.elseClause() != null) {
+                    push(s.elseClause(), EVAL);
+                }
+            }
+            case Stmt.Return s -> unwindCall(popValue());
+            default -> throw new IllegalStateException("Can't apply " + node);
+        }
+    }
+
+    private void second(Object node) {
+        switch (node) {
+            case Expr.Set e -> {
+                var value = popValue();
+                var inst = (LoxInstance) popValue();
+                inst.set(e.name(), value);
+                pushValue(null);
+            }
+            case Expr.SetIndex e -> {
+                var value = popValue();
+                var index = popValue();
+                var indexable = (LoxIndexable) popValue();
+                indexable.setIndex(e.bracket(), index, value);
+                pushValue(value);
+            }
+            default -> throw new IllegalStateException("Can't apply " + node);
+        }
+    }
+
+    private void call(Expr.Call expr) {
+        int argc = expr.args().size();
+        var args = new ArrayList<Object>(argc);
+        for (int i = valueTop - argc; i < valueTop; i++) {
+            args.add(values[i]);
+        }
+        Arrays.fill(values, valueTop - argc, valueTop, null);
+        valueTop -= argc;
+        var target = popValue();
+
+        var callable = callee(expr, target, args);
+        if (callable instanceof LoxFunction function) {
+            enter(expr, function, args);
+        } else if (callable instanceof LoxClass klass) {
+            var instance = new LoxInstance(klass);
+            var initializer = klass.findMethod("init");
+            if (initializer != null) {
+                enter(expr, initializer.bind(instance), args);
+            } else {
+                pushValue(instance);
+            }
+        } else {
+            pushValue(invoke(expr, callable, args));
+        }
+    }
+
+    private void enter(Expr.Call expr, LoxFunction function, List<Object> args) {
+        if (depth >= maxDepth) {
+            throw new RuntimeError(expr.paren(), "Stack overflow: more than %d nested calls".formatted(maxDepth));
+        }
+
+        var frame = new Environment(function.closure());
+        var params = function.declaration().params();
+        for (int i = 0; i < args.size(); i++) {
+            frame.define(params.get(i).lexeme, args.get(i));
+        }
+
+        depth++;
+        push(function, FRAME);
+        push(env, RESTORE_ENV);
+        pushAll(function.declaration().body());
+        env = frame;
+    }
+
+    private static Object result(LoxFunction function, Object value) {
+        return function.isInitializer() ? function.closure().getAt(0, "this") : value;
+    }
+
+    // pops everything up to and including the innermost call frame, leaving its result
+    private void unwindCall(Object value) {
+        Environment restore = null;
+        while (top > runBase) {
+            var node = nodes[--top];
+            nodes[top] = null;
+            if (phases[top] == RESTORE_ENV) {
+                restore = (Environment) node;
+            } else if (phases[top] == FRAME) {
+                env = restore;
+                depth--;
+                pushValue(result((LoxFunction) node, value));
+                return;
+            }
+        }
+
+        // the body was entered through executeBlock by a native; hand the value back the usual way
+        if (restore != null) {
+            env = restore;
+        }
+        throw new Return(value);
+    }
+
+    // pops everything up to and including the innermost loop
+    private void unwindLoop() {
+        Environment restore = null;
+        while (top > runBase) {
+            var node = nodes[--top];
+            nodes[top] = null;
+            if (phases[top] == RESTORE_ENV) {
+                restore = (Environment) node;
+            } else if (phases[top] == LOOP_BODY) {
+                break;
+            }
+        }
+
+        if (restore != null) {
+            env = restore;
+        }
+    }
+
+    private void push(Object node, byte phase) {
+        if (top == nodes.length) {
+            nodes = Arrays.copyOf(nodes, top * 2);
+            phases = Arrays.copyOf(phases, top * 2);
+        }
+        nodes[top] = node;
+        phases[top++] = phase;
+    }
+
+    // pushed in reverse so the first statement runs first
+    private void pushAll(List<Stmt> statements) {
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            push(statements.get(i), EVAL);
+        }
+    }
+
+    private void pushValue(Object value) {
+        if (valueTop == values.length) {
+            values = Arrays.copyOf(values, valueTop * 2);
+        }
+        values[valueTop++] = value;
+    }
+
+    private Object popValue() {
+        var value = values[--valueTop];
+        values[valueTop] = null;
+        return value;
+    }
+}
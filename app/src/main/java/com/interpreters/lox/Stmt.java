@@ -17,11 +17,37 @@ public sealed interface Stmt {
 
 	<R> R accept(Visitor<R> visitor);
 
+	static <R> R dispatch(Stmt stmt, Visitor<R> visitor) {
+		return switch (stmt) {
+			case Expression node -> visitor.visit(node);
+			case VarDeclaration node -> visitor.visit(node);
+			case Block node -> visitor.visit(node);
+			case Print node -> visitor.visit(node);
+			case If node -> visitor.visit(node);
+			case While node -> visitor.visit(node);
+			case Function node -> visitor.visit(node);
+			case Class node -> visitor.visit(node);
+			case Break node -> visitor.visit(node);
+			case Return node -> visitor.visit(node);
+		};
+	}
+
     record Expression(Expr expr) implements Stmt {
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record VarDeclaration(Token name, Expr initializer) implements Stmt {
@@ -29,6 +55,17 @@ public sealed interface Stmt {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Block(List<Stmt> statements) implements Stmt {
@@ -36,6 +73,17 @@ public sealed interface Stmt {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Print(Expr expr) implements Stmt {
@@ -43,6 +91,17 @@ public sealed interface Stmt {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record If(Expr condition, Stmt thenClause, Stmt elseClause) implements Stmt {
@@ -50,13 +109,35 @@ public sealed interface Stmt {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
-    record While(Expr condition, Stmt body) implements Stmt {
+    record While(Token keyword, Expr condition, Stmt body) implements Stmt {
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Function(Token name, Expr.Function function) implements Stmt {
@@ -64,6 +145,17 @@ public sealed interface Stmt {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Class(Token name, Expr.Variable superclass, List<Function> methods) implements Stmt {
@@ -71,6 +163,17 @@ public sealed interface Stmt {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Break() implements Stmt {
@@ -78,6 +181,17 @@ public sealed interface Stmt {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
     record Return(Token keyword, Expr value) implements Stmt {
@@ -85,6 +199,17 @@ public sealed interface Stmt {
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
 }
\ No newline at end of file
@@ -5,12 +5,19 @@ public class Token {
     String lexeme;
     Object literal;
     int line;
+    // index of the first character in the source, or -1 for tokens that weren't scanned
+    int offset;
 
     public Token(TokenType type, String lexeme, Object literal, int line) {
+        this(type, lexeme, literal, line, -1);
+    }
+
+    public Token(TokenType type, String lexeme, Object literal, int line, int offset) {
         this.type = type;
         this.lexeme = lexeme;
         this.literal = literal;
         this.line = line;
+        this.offset = offset;
     }
 
     @Override
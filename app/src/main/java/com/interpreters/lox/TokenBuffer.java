@@ -0,0 +1,151 @@
+package com.interpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tokens stored as parallel primitive arrays over the source text: a type ordinal, start offset, length and line
+ * per token, 13 bytes each. Lexemes and literals are cut from the source on demand, and {@link Token}
+ * objects are only created for the tokens the parser keeps in the tree, each time it asks for one.
+ * <p>
+ * A buffer can also wrap a list of existing tokens, in which case it hands those tokens out as they are.
+ */
+public final class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final String source;
+    private final List<Token> tokens;
+    private byte[] types;
+    private int[] offsets;
+    private int[] lengths;
+    private int[] lines;
+    private int size;
+    // direct-mapped cache of recent lexemes, so tokens for the same name share one String
+    private String[] lexemes;
+
+    // source may be null for buffers that are only appended to others
+    TokenBuffer(String source, int capacity) {
+        this.source = source;
+        this.tokens = null;
+        this.types = new byte[Math.max(capacity, 16)];
+        this.offsets = new int[types.length];
+        this.lengths = new int[types.length];
+        this.lines = new int[types.length];
+    }
+
+    private TokenBuffer(List<Token> tokens) {
+        this.source = null;
+        this.tokens = tokens;
+        this.size = tokens.size();
+    }
+
+    public static TokenBuffer of(List<Token> tokens) {
+        return new TokenBuffer(tokens);
+    }
+
+    void add(TokenType type, int offset, int length, int line) {
+        if (size == types.length) {
+            grow(size + (size >> 1) + 1);
+        }
+        types[size] = (byte) type.ordinal();
+        offsets[size] = offset;
+        lengths[size] = length;
+        lines[size] = line;
+        size++;
+    }
+
+    /**
+     * Appends the tokens of a buffer over the same source, moving them down by {@code lineShift} lines.
+     */
+    void append(TokenBuffer other, int lineShift) {
+        if (size + other.size > types.length) {
+            grow(Math.max(size + other.size, size + (size >> 1)));
+        }
+        System.arraycopy(other.types, 0, types, size, other.size);
+        System.arraycopy(other.offsets, 0, offsets, size, other.size);
+        System.arraycopy(other.lengths, 0, lengths, size, other.size);
+        for (int i = 0; i < other.size; i++) {
+            lines[size + i] = other.lines[i] + lineShift;
+        }
+        size += other.size;
+    }
+
+    private void grow(int capacity) {
+        types = Arrays.copyOf(types, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int index) {
+        return tokens != null ? tokens.get(index).type : TYPES[types[index]];
+    }
+
+    public int line(int index) {
+        return tokens != null ? tokens.get(index).line : lines[index];
+    }
+
+    public int offset(int index) {
+        return tokens != null ? tokens.get(index).offset : offsets[index];
+    }
+
+    public String lexeme(int index) {
+        if (tokens != null) return tokens.get(index).lexeme;
+
+        int start = offsets[index];
+        int length = lengths[index];
+        int hash = length;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+
+        if (lexemes == null) {
+            lexemes = new String[1024];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (lexemes.length - 1);
+        var cached = lexemes[slot];
+        if (cached != null && cached.length() == length && matches(cached, start)) {
+            return cached;
+        }
+        var text = source.substring(start, start + length);
+        lexemes[slot] = text;
+        return text;
+    }
+
+    private boolean matches(String word, int start) {
+        for (int i = 0; i < word.length(); i++) {
+            if (source.charAt(start + i) != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public Object literal(int index) {
+        if (tokens != null) return tokens.get(index).literal;
+
+        return switch (type(index)) {
+            case NUMBER -> Double.parseDouble(lexeme(index));
+            case STRING -> source.substring(offsets[index] + 1, offsets[index] + lengths[index] - 1);
+            default -> null;
+        };
+    }
+
+    public Token token(int index) {
+        if (tokens != null) return tokens.get(index);
+        return new Token(type(index), lexeme(index), literal(index), lines[index], offsets[index]);
+    }
+
+    public List<Token> toList() {
+        if (tokens != null) return tokens;
+
+        var list = new ArrayList<Token>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(token(i));
+        }
+        return list;
+    }
+}
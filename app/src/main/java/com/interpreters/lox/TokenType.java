@@ -1,7 +1,7 @@
 package com.interpreters.lox;
 
 public enum TokenType {
-    LEFT_BRACE, RIGHT_BRACE, LEFT_PAREN, RIGHT_PAREN,
+    LEFT_BRACE, RIGHT_BRACE, LEFT_PAREN, RIGHT_PAREN, LEFT_BRACKET, RIGHT_BRACKET,
     PLUS, MINUS, STAR, SLASH,
 
     IDENTIFIER, NUMBER, STRING,
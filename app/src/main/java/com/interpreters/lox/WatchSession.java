@@ -0,0 +1,249 @@
+package com.interpreters.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Backs {@code jlox --watch file}: runs a script and re-runs it each time the file changes, in one runtime.
+ * <p>
+ * The source is split into top-level statements by tokens. {@code fun} and {@code class} declarations whose tokens
+ * are unchanged stay live in the interpreter and aren't executed again. Changed ones are re-parsed, re-resolved and
+ * redefined in place, along with subclasses of changed classes; callers pick up the new definition through the
+ * global's cell. Declarations that were removed become undefined. All other top-level statements run again in
+ * order, reusing the parse of any statement whose tokens and position didn't change.
+ */
+public class WatchSession {
+    private static final long DEBOUNCE_MILLIS = 50;
+
+    public record Update(int executed, int kept) {}
+
+    // name and superclass are set for fun and class declarations only
+    private record Chunk(String signature, String name, String superclass, List<Token> tokens) {}
+
+    private final LoxRuntime runtime;
+    // used while compiling single chunks; the whole file is recompiled to report errors properly
+    private final ErrorReporter silent = new ErrorReporter(
+            new PrintStream(OutputStream.nullOutputStream()), new PrintStream(OutputStream.nullOutputStream()));
+    private Map<String, Program> compiled = new HashMap<>();
+    // signature of the live version of each declaration
+    private final Map<String, String> live = new HashMap<>();
+
+    public WatchSession(LoxRuntime runtime) {
+        this.runtime = runtime;
+    }
+
+    public static void watch(Path file) throws IOException, InterruptedException {
+        var session = new WatchSession(new LoxRuntime());
+        var name = file.getFileName();
+        var directory = file.toAbsolutePath().getParent();
+
+        try (var service = FileSystems.getDefault().newWatchService()) {
+            directory.register(service, ENTRY_CREATE, ENTRY_MODIFY);
+
+            var source = Files.readString(file);
+            session.runAndReport(file, source);
+
+            while (true) {
+                var key = service.take();
+                boolean changed = false;
+                do {
+                    for (var event : key.pollEvents()) {
+                        changed |= name.equals(event.context());
+                    }
+                    key.reset();
+                    // editors often save in several writes; wait for them to settle
+                    Thread.sleep(DEBOUNCE_MILLIS);
+                } while ((key = service.poll()) != null);
+
+                if (!changed || !Files.exists(file)) continue;
+
+                var updated = Files.readString(file);
+                if (!updated.equals(source)) {
+                    source = updated;
+                    session.runAndReport(file, source);
+                }
+            }
+        }
+    }
+
+    private void runAndReport(Path file, String source) {
+        var start = System.nanoTime();
+        var update = update(source);
+        runtime.flush();
+
+        System.err.printf("[watch] %s: %d declarations kept, %d statements run, %.1f ms%n",
+                file, update.kept(), update.executed(), (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Runs a new version of the script. Compile errors are reported and leave the previous version live.
+     */
+    public Update update(String source) {
+        runtime.resetErrors();
+        var tokens = runtime.scan(source);
+        if (tokens == null) {
+            return new Update(0, live.size());
+        }
+
+        var chunks = split(tokens);
+        var programs = new HashMap<String, Program>();
+        for (var chunk : chunks) {
+            var program = compiled.get(chunk.signature());
+            if (program == null) {
+                program = compile(chunk);
+            }
+            if (program == null) {
+                return runWhole(source);
+            }
+            programs.put(chunk.signature(), program);
+        }
+        compiled = programs;
+
+        var declared = new HashSet<String>();
+        var changed = new HashSet<String>();
+        for (var chunk : chunks) {
+            if (chunk.name() != null) {
+                declared.add(chunk.name());
+                if (!chunk.signature().equals(live.get(chunk.name()))) {
+                    changed.add(chunk.name());
+                }
+            }
+        }
+        addSubclasses(chunks, changed);
+
+        for (var name : new ArrayList<>(live.keySet())) {
+            if (!declared.contains(name)) {
+                live.remove(name);
+                runtime.undefine(name);
+            }
+        }
+
+        int executed = 0;
+        int kept = 0;
+        for (var chunk : chunks) {
+            if (chunk.name() != null && !changed.contains(chunk.name())) {
+                kept++;
+                continue;
+            }
+
+            runtime.run(programs.get(chunk.signature()));
+            executed++;
+            if (runtime.hadRuntimeError()) {
+                break;
+            }
+            if (chunk.name() != null) {
+                live.put(chunk.name(), chunk.signature());
+            }
+        }
+        return new Update(executed, kept);
+    }
+
+    // a class extending a changed class has to be redefined to pick up the new superclass
+    private static void addSubclasses(List<Chunk> chunks, Set<String> changed) {
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            for (var chunk : chunks) {
+                if (chunk.superclass() != null && changed.contains(chunk.superclass())) {
+                    grew |= changed.add(chunk.name());
+                }
+            }
+        }
+    }
+
+    private Program compile(Chunk chunk) {
+        silent.reset();
+        var tokens = new ArrayList<>(chunk.tokens());
+        var last = tokens.get(tokens.size() - 1);
+        tokens.add(new Token(TokenType.EOF, "", null, last.line));
+
+        return LoxRuntime.resolve(new Parser(tokens, silent).parse(), silent);
+    }
+
+    // the split didn't produce valid statements, or the source has errors: compile and run it as a whole
+    private Update runWhole(String source) {
+        var program = runtime.compile(source);
+        if (program == null) {
+            return new Update(0, live.size());
+        }
+
+        compiled = new HashMap<>();
+        live.clear();
+        runtime.run(program);
+        return new Update(program.statements().size(), 0);
+    }
+
+    /**
+     * Splits tokens into top-level statements: a statement ends at a semicolon outside any brackets, or at the
+     * closing brace of a declaration, block, loop or if (unless an else follows).
+     */
+    static List<Chunk> split(List<Token> tokens) {
+        var chunks = new ArrayList<Chunk>();
+        int start = 0;
+        int depth = 0;
+
+        for (int i = 0; i < tokens.size() && tokens.get(i).type != TokenType.EOF; i++) {
+            var token = tokens.get(i);
+            switch (token.type) {
+                case LEFT_PAREN, LEFT_BRACE, LEFT_BRACKET -> depth++;
+                case RIGHT_PAREN, RIGHT_BRACE, RIGHT_BRACKET -> depth--;
+                default -> {}
+            }
+            if (depth != 0) continue;
+
+            boolean ends = token.type == TokenType.SEMICOLON
+                    || token.type == TokenType.RIGHT_BRACE && endsWithBrace(tokens, start)
+                    && tokens.get(i + 1).type != TokenType.ELSE;
+            if (ends) {
+                chunks.add(chunk(tokens.subList(start, i + 1)));
+                start = i + 1;
+            }
+        }
+
+        if (tokens.get(start).type != TokenType.EOF) {
+            chunks.add(chunk(tokens.subList(start, tokens.size() - 1)));
+        }
+        return chunks;
+    }
+
+    private static boolean endsWithBrace(List<Token> tokens, int start) {
+        return switch (tokens.get(start).type) {
+            case FUN -> tokens.get(start + 1).type == TokenType.IDENTIFIER;
+            case CLASS, LEFT_BRACE, IF, WHILE, FOR -> true;
+            default -> false;
+        };
+    }
+
+    private static Chunk chunk(List<Token> tokens) {
+        var first = tokens.get(0);
+        String name = null;
+        String superclass = null;
+        if (tokens.size() > 1 && tokens.get(1).type == TokenType.IDENTIFIER
+                && (first.type == TokenType.FUN || first.type == TokenType.CLASS)) {
+            name = tokens.get(1).lexeme;
+            if (first.type == TokenType.CLASS && tokens.size() > 3 && tokens.get(2).type == TokenType.LESS) {
+                superclass = tokens.get(3).lexeme;
+            }
+        }
+
+        // declarations are matched by text alone, so moving one doesn't re-run it
+        var signature = new StringBuilder(name != null ? "" : first.line + ":");
+        for (var token : tokens) {
+            signature.append(token.lexeme).append('\u0000');
+        }
+        return new Chunk(signature.toString(), name, superclass, List.copyOf(tokens));
+    }
+}
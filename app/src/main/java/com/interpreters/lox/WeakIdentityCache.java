@@ -0,0 +1,104 @@
+package com.interpreters.lox;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * A map from objects compared by identity to values, which doesn't keep its keys alive: once a key has been
+ * garbage collected its entry is dropped. A value must not refer to its own key, or the entry is never dropped.
+ * Not thread-safe.
+ */
+final class WeakIdentityCache<K, V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final class Entry<K, V> extends WeakReference<K> {
+        final int hash;
+        final V value;
+        Entry<K, V> next;
+
+        Entry(K key, int hash, V value, Entry<K, V> next, ReferenceQueue<K> queue) {
+            super(key, queue);
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+    private Entry<K, V>[] table = newTable(INITIAL_CAPACITY);
+    private int size;
+
+    V get(K key) {
+        int hash = System.identityHashCode(key);
+        for (var entry = table[hash & (table.length - 1)]; entry != null; entry = entry.next) {
+            if (entry.get() == key) return entry.value;
+        }
+        return null;
+    }
+
+    void put(K key, V value) {
+        expunge();
+        int hash = System.identityHashCode(key);
+        for (var entry = table[hash & (table.length - 1)]; entry != null; entry = entry.next) {
+            if (entry.get() == key) {
+                unlink(entry);
+                break;
+            }
+        }
+
+        int index = hash & (table.length - 1);
+        table[index] = new Entry<>(key, hash, value, table[index], queue);
+        if (++size > table.length / 4 * 3) {
+            resize();
+        }
+    }
+
+    int size() {
+        expunge();
+        return size;
+    }
+
+    // drops the entries whose keys have been collected
+    private void expunge() {
+        for (var reference = queue.poll(); reference != null; reference = queue.poll()) {
+            @SuppressWarnings("unchecked")
+            var entry = (Entry<K, V>) reference;
+            unlink(entry);
+        }
+    }
+
+    private void unlink(Entry<K, V> entry) {
+        int index = entry.hash & (table.length - 1);
+        Entry<K, V> previous = null;
+        for (var current = table[index]; current != null; previous = current, current = current.next) {
+            if (current != entry) continue;
+
+            if (previous == null) {
+                table[index] = current.next;
+            } else {
+                previous.next = current.next;
+            }
+            size--;
+            return;
+        }
+    }
+
+    private void resize() {
+        var old = table;
+        table = newTable(old.length * 2);
+        for (var head : old) {
+            for (var entry = head; entry != null; ) {
+                var next = entry.next;
+                int index = entry.hash & (table.length - 1);
+                entry.next = table[index];
+                table[index] = entry;
+                entry = next;
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> Entry<K, V>[] newTable(int capacity) {
+        return (Entry<K, V>[]) new Entry[capacity];
+    }
+}
@@ -37,8 +37,13 @@ Call        : Expr target, Token paren, List<Expr> args
 Function    : List<Token> params, List<Stmt> body
 Get         : Expr target, Token name
 Set         : Expr target, Token name, Expr value
+Index       : Expr target, Token bracket, Expr index
+SetIndex    : Expr target, Token bracket, Expr index, Expr value
 This        : Token keyword
 Super       : Token keyword, Token method
+Increment       : Assign original, double delta
+CompareConstant : Binary original, double constant
+CompoundAssign  : Assign original
 """);
 
         defineAst(outputPath, "Stmt", """
@@ -47,7 +52,7 @@ VarDeclaration  : Token name, Expr initializer
 Block           : List<Stmt> statements
 Print           : Expr expr
 If              : Expr condition, Stmt thenClause, Stmt elseClause
-While           : Expr condition, Stmt body
+While           : Token keyword, Expr condition, Stmt body
 Function        : Token name, Expr.Function function
 Class           : Token name, Expr.Variable superclass, List<Function> methods
 Break           : \s
@@ -77,6 +82,7 @@ Return          : Token keyword, Expr value
 
             writer.println("\t<R> R accept(Visitor<R> visitor);");
             writer.println();
+            defineDispatch(writer, className, expressionDefs);
 
             for (var expr : expressionDefs) {
                 writer.printf(STR.
@@ -86,6 +92,17 @@ Return          : Token keyword, Expr value
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visit(this);
         }
+
+        // nodes are keyed by identity, and hashing a whole subtree made every resolution lookup slow
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
     }
 
 """);
@@ -109,6 +126,21 @@ Return          : Token keyword, Expr value
 
     }
 
+    // an exhaustive switch over the sealed hierarchy, as an alternative to the accept call
+    private static void defineDispatch(PrintWriter writer, String className, List<ExpressionDef> expressionDefs) {
+        var variable = className.toLowerCase();
+        writer.println(STR."\tstatic <R> R dispatch(\{ className } \{ variable }, Visitor<R> visitor) {");
+        writer.println(STR."\t\treturn switch (\{ variable }) {");
+
+        for (var exprDef : expressionDefs) {
+            writer.println(STR."\t\t\tcase \{ exprDef.name() } node -> visitor.visit(node);");
+        }
+
+        writer.println("\t\t};");
+        writer.println("\t}");
+        writer.println();
+    }
+
     private static ExpressionDef parseExpressionDef(String exprOption) {
         var parts = exprOption.split(":");
         assert parts.length == 2;
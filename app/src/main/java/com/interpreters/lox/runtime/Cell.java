@@ -0,0 +1,12 @@
+package com.interpreters.lox.runtime;
+
+/**
+ * Holds a local variable that functions declared in its scope capture, so that they all see its assignments.
+ */
+public final class Cell {
+    public Object value;
+
+    public Cell(Object value) {
+        this.value = value;
+    }
+}
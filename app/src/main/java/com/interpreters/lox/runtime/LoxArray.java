@@ -0,0 +1,187 @@
+package com.interpreters.lox.runtime;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The value of {@code array()}, with the properties of the interpreter's arrays. Sequential: compiled programs
+ * have no forked workers to run callbacks on.
+ */
+public final class LoxArray implements LoxObject, LoxIndexable {
+    // properties; the methods index the array of bound methods
+    private static final int LENGTH = -1;
+    private static final int PUSH = 0;
+    private static final int POP = 1;
+    private static final int MAP = 2;
+    private static final int FILTER = 3;
+    private static final int REDUCE = 4;
+    private static final int SORT = 5;
+    private static final int SORT_WITH = 6;
+    private static final int METHOD_COUNT = 7;
+
+    private Object[] elements = new Object[8];
+    private int size;
+    // bound on first read, so reading arr.push twice gives the same function, as in the interpreter
+    private LoxCallable[] methods;
+
+    public int size() {
+        return size;
+    }
+
+    public void push(Object value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        elements[size++] = value;
+    }
+
+    public Object pop() {
+        if (size == 0) {
+            throw new LoxError(LoxError.NO_LINE, "Can't pop from an empty array");
+        }
+        var value = elements[--size];
+        elements[size] = null;
+        return value;
+    }
+
+    @Override
+    public Object get(String name, int line) {
+        int method = switch (name) {
+            case "length" -> LENGTH;
+            case "push" -> PUSH;
+            case "pop" -> POP;
+            case "map" -> MAP;
+            case "filter" -> FILTER;
+            case "reduce" -> REDUCE;
+            case "sort" -> SORT;
+            case "sortWith" -> SORT_WITH;
+            default -> throw new LoxError(line, "Unknown array property '%s'".formatted(name));
+        };
+        if (method == LENGTH) {
+            return (double) size;
+        }
+
+        if (methods == null) {
+            methods = new LoxCallable[METHOD_COUNT];
+        }
+        if (methods[method] == null) {
+            methods[method] = bind(method);
+        }
+        return methods[method];
+    }
+
+    private LoxCallable bind(int method) {
+        return switch (method) {
+            case PUSH -> new Natives.Native("push", 1, args -> {
+                push(args[0]);
+                return null;
+            });
+            case POP -> new Natives.Native("pop", 0, args -> pop());
+            case MAP -> new Natives.Native("map", 1, args -> map(callback(args[0], 1)));
+            case FILTER -> new Natives.Native("filter", 1, args -> filter(callback(args[0], 1)));
+            case REDUCE -> new Natives.Native("reduce", 2, args -> reduce(callback(args[0], 2), args[1]));
+            case SORT -> new Natives.Native("sort", 0, args -> sort());
+            case SORT_WITH -> new Natives.Native("sortWith", 1, args -> sortWith(callback(args[0], 2)));
+            default -> throw new IllegalArgumentException("No array method " + method);
+        };
+    }
+
+    @Override
+    public Object getIndex(Object index, int line) {
+        return elements[checkIndex(index, line)];
+    }
+
+    @Override
+    public void setIndex(Object index, Object value, int line) {
+        elements[checkIndex(index, line)] = value;
+    }
+
+    private int checkIndex(Object index, int line) {
+        if (!(index instanceof Double d) || d != Math.rint(d)) {
+            throw new LoxError(line, "Array index should be an integer");
+        }
+        if (d < 0 || d >= size) {
+            throw new LoxError(line, "Array index %s out of bounds for length %d".formatted(Ops.stringify(d), size));
+        }
+        return d.intValue();
+    }
+
+    private LoxArray map(LoxCallable fn) {
+        var result = new LoxArray();
+        for (int i = 0; i < size; i++) {
+            result.push(fn.call(new Object[]{elements[i]}));
+        }
+        return result;
+    }
+
+    private LoxArray filter(LoxCallable fn) {
+        var result = new LoxArray();
+        for (int i = 0; i < size; i++) {
+            var element = elements[i];
+            if (Ops.truthy(fn.call(new Object[]{element}))) result.push(element);
+        }
+        return result;
+    }
+
+    private Object reduce(LoxCallable fn, Object initial) {
+        var accumulator = initial;
+        for (int i = 0; i < size; i++) {
+            accumulator = fn.call(new Object[]{accumulator, elements[i]});
+        }
+        return accumulator;
+    }
+
+    // numbers in the order of Arrays.sort(double[]), which the interpreter uses for them
+    private LoxArray sort() {
+        boolean numbers = true;
+        boolean strings = true;
+        for (int i = 0; i < size; i++) {
+            numbers &= elements[i] instanceof Double;
+            strings &= elements[i] instanceof String;
+        }
+        if (numbers) {
+            sortElements(Comparator.comparingDouble(o -> (Double) o));
+        } else if (strings) {
+            sortElements(Comparator.comparing(o -> (String) o));
+        } else {
+            throw new LoxError(LoxError.NO_LINE, "Can only sort arrays of numbers or of strings, use sortWith instead");
+        }
+        return this;
+    }
+
+    private LoxArray sortWith(LoxCallable fn) {
+        sortElements((a, b) -> {
+            var result = fn.call(new Object[]{a, b});
+            if (!(result instanceof Double d)) {
+                throw new LoxError(LoxError.NO_LINE, "Comparator should return a number");
+            }
+            return d < 0 ? -1 : d > 0 ? 1 : 0;
+        });
+        return this;
+    }
+
+    private void sortElements(Comparator<Object> comparator) {
+        try {
+            Arrays.sort(elements, 0, size, comparator);
+        } catch (IllegalArgumentException e) {
+            throw new LoxError(LoxError.NO_LINE, "Comparator gives inconsistent results");
+        }
+    }
+
+    static LoxCallable callback(Object fn, int arity) {
+        if (!(fn instanceof LoxCallable callable) || callable.arity() != arity) {
+            throw new LoxError(LoxError.NO_LINE, "Expected a function taking %d argument(s)".formatted(arity));
+        }
+        return callable;
+    }
+
+    @Override
+    public String toString() {
+        var builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(Ops.stringify(elements[i]));
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,6 @@
+package com.interpreters.lox.runtime;
+
+public interface LoxCallable {
+    int arity();
+    Object call(Object[] args);
+}
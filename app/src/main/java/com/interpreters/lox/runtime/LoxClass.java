@@ -0,0 +1,48 @@
+package com.interpreters.lox.runtime;
+
+import java.util.Map;
+
+public final class LoxClass implements LoxCallable {
+    private final String name;
+    private final LoxClass superclass;
+    private final Map<String, LoxMethod> methods;
+
+    public LoxClass(String name, LoxClass superclass, Map<String, LoxMethod> methods) {
+        this.name = name;
+        this.superclass = superclass;
+        this.methods = methods;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    @Override
+    public int arity() {
+        var initializer = findMethod("init");
+        return initializer != null ? initializer.arity() : 0;
+    }
+
+    @Override
+    public Object call(Object[] args) {
+        var instance = new LoxInstance(this);
+        var initializer = findMethod("init");
+        if (initializer != null) {
+            initializer.invoke(instance, args);
+        }
+
+        return instance;
+    }
+
+    public LoxMethod findMethod(String name) {
+        var ownMethod = methods.get(name);
+        if (ownMethod != null) return ownMethod;
+
+        if (superclass != null) {
+            return superclass.findMethod(name);
+        }
+
+        return null;
+    }
+}
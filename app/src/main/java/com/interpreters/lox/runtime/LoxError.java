@@ -0,0 +1,20 @@
+package com.interpreters.lox.runtime;
+
+/**
+ * A Lox runtime error in a compiled program. Natives, which don't know their call site, raise it without a line
+ * and the call attaches one.
+ */
+public class LoxError extends RuntimeException {
+    static final int NO_LINE = -1;
+
+    private final int line;
+
+    public LoxError(int line, String message) {
+        super(message, null, false, false);
+        this.line = line;
+    }
+
+    public int getLine() {
+        return line;
+    }
+}
@@ -0,0 +1,41 @@
+package com.interpreters.lox.runtime;
+
+/**
+ * A function value. The compiled code of the function is its body; functions declared in other functions get
+ * the variables they capture as {@link Cell}s.
+ */
+public final class LoxFunction implements LoxCallable {
+    @FunctionalInterface
+    public interface Body {
+        Object call(Object[] args);
+    }
+
+    private final String name;
+    private final int arity;
+    private final Body body;
+
+    // name is null for lambdas
+    public LoxFunction(String name, int arity, Body body) {
+        this.name = name;
+        this.arity = arity;
+        this.body = body;
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public Object call(Object[] args) {
+        return body.call(args);
+    }
+
+    @Override
+    public String toString() {
+        if (name != null) {
+            return "<fn %s>".formatted(name);
+        }
+        return "<lambda fn>";
+    }
+}
@@ -0,0 +1,10 @@
+package com.interpreters.lox.runtime;
+
+/**
+ * A value supporting {@code value[index]} reads and {@code value[index] = x} writes.
+ */
+public interface LoxIndexable {
+    Object getIndex(Object index, int line);
+
+    void setIndex(Object index, Object value, int line);
+}
@@ -0,0 +1,64 @@
+package com.interpreters.lox.runtime;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public final class LoxInstance {
+    // value stored for fields set to nil
+    private static final Object NIL = new Object();
+
+    private final LoxClass klass;
+    private final Map<String, Object> properties = new HashMap<>();
+
+    public LoxInstance(LoxClass klass) {
+        this.klass = klass;
+    }
+
+    @Override
+    public String toString() {
+        return klass + " instance";
+    }
+
+    public Object get(String name, int line) {
+        var value = properties.get(name);
+        if (value != null) {
+            return value == NIL ? null : value;
+        }
+
+        var method = klass.findMethod(name);
+        if (method != null) return method.bind(this);
+
+        throw unknownProperty(name, line);
+    }
+
+    public void set(String name, Object value) {
+        properties.put(name, value == null ? NIL : value);
+    }
+
+    boolean has(String name) {
+        return properties.containsKey(name) || klass.findMethod(name) != null;
+    }
+
+    /**
+     * Calls the method or callable field {@code name} without binding a method first.
+     */
+    Object invoke(String name, Object[] args, int line) {
+        var value = properties.get(name);
+        if (value != null) {
+            return Ops.call(value == NIL ? null : value, line, args);
+        }
+
+        var method = klass.findMethod(name);
+        if (method == null) {
+            throw unknownProperty(name, line);
+        }
+        if (method.arity() != args.length) {
+            throw Ops.arityError(line, args.length, method.arity());
+        }
+        return method.invoke(this, args);
+    }
+
+    static LoxError unknownProperty(String name, int line) {
+        return new LoxError(line, "Unknown property '%s'".formatted(name));
+    }
+}
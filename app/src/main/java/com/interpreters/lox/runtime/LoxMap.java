@@ -0,0 +1,77 @@
+package com.interpreters.lox.runtime;
+
+/**
+ * The value of {@code map()}, with the properties of the interpreter's maps.
+ */
+public final class LoxMap extends MapTable implements LoxObject, LoxIndexable {
+    // properties; the methods index the array of bound methods
+    private static final int SIZE = -1;
+    private static final int HAS = 0;
+    private static final int REMOVE = 1;
+    private static final int KEYS = 2;
+    private static final int VALUES = 3;
+    private static final int FOR_EACH = 4;
+    private static final int METHOD_COUNT = 5;
+
+    private LoxCallable[] methods;
+
+    public LoxArray keys() {
+        var keys = new LoxArray();
+        forEachEntry((key, value) -> keys.push(key));
+        return keys;
+    }
+
+    public LoxArray values() {
+        var values = new LoxArray();
+        forEachEntry((key, value) -> values.push(value));
+        return values;
+    }
+
+    @Override
+    public Object get(String name, int line) {
+        int method = switch (name) {
+            case "size" -> SIZE;
+            case "has" -> HAS;
+            case "remove" -> REMOVE;
+            case "keys" -> KEYS;
+            case "values" -> VALUES;
+            case "forEach" -> FOR_EACH;
+            default -> throw new LoxError(line, "Unknown map property '%s'".formatted(name));
+        };
+        if (method == SIZE) {
+            return (double) size();
+        }
+        if (methods == null) {
+            methods = new LoxCallable[METHOD_COUNT];
+        }
+        if (methods[method] == null) {
+            methods[method] = bind(method);
+        }
+        return methods[method];
+    }
+
+    private LoxCallable bind(int method) {
+        return switch (method) {
+            case HAS -> new Natives.Native("has", 1, args -> containsKey(args[0]));
+            case REMOVE -> new Natives.Native("remove", 1, args -> remove(args[0]));
+            case KEYS -> new Natives.Native("keys", 0, args -> keys());
+            case VALUES -> new Natives.Native("values", 0, args -> values());
+            case FOR_EACH -> new Natives.Native("forEach", 1, args -> {
+                var fn = LoxArray.callback(args[0], 2);
+                forEachEntry((key, value) -> fn.call(new Object[]{key, value}));
+                return null;
+            });
+            default -> throw new IllegalArgumentException("No map method " + method);
+        };
+    }
+
+    @Override
+    public Object getIndex(Object index, int line) {
+        return get(index);
+    }
+
+    @Override
+    public void setIndex(Object index, Object value, int line) {
+        put(index, value);
+    }
+}
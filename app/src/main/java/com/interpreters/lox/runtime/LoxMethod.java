@@ -0,0 +1,37 @@
+package com.interpreters.lox.runtime;
+
+/**
+ * A method of a {@link LoxClass}, compiled with the instance as an extra argument instead of binding
+ * {@code this} in an environment. An initializer returns its instance whatever its body returns.
+ */
+public final class LoxMethod {
+    @FunctionalInterface
+    public interface Body {
+        Object invoke(LoxInstance self, Object[] args);
+    }
+
+    private final String name;
+    private final int arity;
+    private final boolean initializer;
+    private final Body body;
+
+    public LoxMethod(String name, int arity, boolean initializer, Body body) {
+        this.name = name;
+        this.arity = arity;
+        this.initializer = initializer;
+        this.body = body;
+    }
+
+    public int arity() {
+        return arity;
+    }
+
+    public Object invoke(LoxInstance self, Object[] args) {
+        var result = body.invoke(self, args);
+        return initializer ? self : result;
+    }
+
+    public LoxFunction bind(LoxInstance self) {
+        return new LoxFunction(name, arity, args -> invoke(self, args));
+    }
+}
@@ -0,0 +1,8 @@
+package com.interpreters.lox.runtime;
+
+/**
+ * A built-in value with properties that can be read with {@code value.name}, e.g. methods of arrays and maps.
+ */
+public interface LoxObject {
+    Object get(String name, int line);
+}
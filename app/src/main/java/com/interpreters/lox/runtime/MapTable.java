@@ -0,0 +1,149 @@
+package com.interpreters.lox.runtime;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * The hash table behind maps, shared by the interpreter and compiled programs so both store and iterate entries
+ * the same way. Open addressing with linear probing: keys and values are interleaved in a single
+ * {@code Object[]} (key at {@code 2i}, value at {@code 2i + 1}), so an entry costs two array slots instead of
+ * a {@code HashMap.Node}. Removal shifts later entries back rather than leaving tombstones. Keys compare with
+ * the same semantics as {@code ==} in Lox: numbers, strings and booleans by value, everything else by identity.
+ */
+public class MapTable {
+    // stands in for a nil key, since null marks an empty slot
+    private static final Object NIL_KEY = new Object();
+    private static final int MIN_CAPACITY = 8;
+
+    private Object[] table = new Object[2 * MIN_CAPACITY];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public Object get(Object key) {
+        int slot = find(wrap(key));
+        return slot < 0 ? null : table[slot + 1];
+    }
+
+    public boolean containsKey(Object key) {
+        return find(wrap(key)) >= 0;
+    }
+
+    public void put(Object key, Object value) {
+        var k = wrap(key);
+        int mask = table.length - 2;
+        int slot = slotOf(k, mask);
+
+        while (table[slot] != null) {
+            if (table[slot].equals(k)) {
+                table[slot + 1] = value;
+                return;
+            }
+            slot = (slot + 2) & mask;
+        }
+
+        table[slot] = k;
+        table[slot + 1] = value;
+        size++;
+        if (size * 4 > capacity() * 3) {
+            resize(capacity() * 2);
+        }
+    }
+
+    public boolean remove(Object key) {
+        int slot = find(wrap(key));
+        if (slot < 0) {
+            return false;
+        }
+
+        int mask = table.length - 2;
+        // shift back every following entry of the probe run that would become unreachable through the hole
+        int hole = slot;
+        int next = (hole + 2) & mask;
+        while (table[next] != null) {
+            int home = slotOf(table[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                table[hole + 1] = table[next + 1];
+                hole = next;
+            }
+            next = (next + 2) & mask;
+        }
+        table[hole] = null;
+        table[hole + 1] = null;
+        size--;
+        return true;
+    }
+
+    /**
+     * Calls {@code action} with every key and value, in table order. Iterates over a snapshot, so {@code action}
+     * may modify the map.
+     */
+    public void forEachEntry(BiConsumer<Object, Object> action) {
+        var entries = Arrays.copyOf(table, table.length);
+        for (int i = 0; i < entries.length; i += 2) {
+            if (entries[i] != null) {
+                action.accept(unwrap(entries[i]), entries[i + 1]);
+            }
+        }
+    }
+
+    private int find(Object key) {
+        int mask = table.length - 2;
+        int slot = slotOf(key, mask);
+
+        while (table[slot] != null) {
+            if (table[slot].equals(key)) {
+                return slot;
+            }
+            slot = (slot + 2) & mask;
+        }
+        return -1;
+    }
+
+    private static int slotOf(Object key, int mask) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) << 1 & mask;
+    }
+
+    private int capacity() {
+        return table.length / 2;
+    }
+
+    private void resize(int capacity) {
+        var old = table;
+        table = new Object[2 * capacity];
+        int mask = table.length - 2;
+
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] == null) continue;
+
+            int slot = slotOf(old[i], mask);
+            while (table[slot] != null) {
+                slot = (slot + 2) & mask;
+            }
+            table[slot] = old[i];
+            table[slot + 1] = old[i + 1];
+        }
+    }
+
+    private static Object wrap(Object key) {
+        return key == null ? NIL_KEY : key;
+    }
+
+    private static Object unwrap(Object key) {
+        return key == NIL_KEY ? null : key;
+    }
+
+    @Override
+    public String toString() {
+        var builder = new StringBuilder("{");
+        forEachEntry((key, value) -> {
+            if (builder.length() > 1) builder.append(", ");
+            builder.append(Ops.stringify(key)).append(": ").append(Ops.stringify(value));
+        });
+        return builder.append('}').toString();
+    }
+}
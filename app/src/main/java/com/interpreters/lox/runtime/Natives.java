@@ -0,0 +1,66 @@
+package com.interpreters.lox.runtime;
+
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+
+/**
+ * The built-in functions compiled programs can use: the clocks, the math module, arrays and maps.
+ */
+public final class Natives {
+    private static final long NANO_ORIGIN = System.nanoTime();
+
+    private static final Map<String, LoxCallable> NATIVES = Map.ofEntries(
+            Map.entry("clock", new Native("clock", 0, args -> System.currentTimeMillis() / 1000.0)),
+            // measured from an origin so a double keeps nanosecond precision
+            Map.entry("nanoClock", new Native("nanoClock", 0, args -> (System.nanoTime() - NANO_ORIGIN) / 1e9)),
+            Map.entry("sqrt", unary("sqrt", Math::sqrt)),
+            Map.entry("abs", unary("abs", Math::abs)),
+            Map.entry("floor", unary("floor", Math::floor)),
+            Map.entry("ceil", unary("ceil", Math::ceil)),
+            Map.entry("pow", binary("pow", Math::pow)),
+            Map.entry("min", binary("min", Math::min)),
+            Map.entry("max", binary("max", Math::max)),
+            Map.entry("array", new Native("array", 0, args -> new LoxArray())),
+            Map.entry("map", new Native("map", 0, args -> new LoxMap())));
+
+    private Natives() {
+    }
+
+    public static boolean exists(String name) {
+        return NATIVES.containsKey(name);
+    }
+
+    /**
+     * The native called {@code name}; only names for which {@link #exists} is true are valid.
+     */
+    public static LoxCallable get(String name) {
+        return NATIVES.get(name);
+    }
+
+    private static Native unary(String name, DoubleUnaryOperator operator) {
+        return new Native(name, 1, args -> operator.applyAsDouble(number(name, args, 0)));
+    }
+
+    private static Native binary(String name, DoubleBinaryOperator operator) {
+        return new Native(name, 2, args -> operator.applyAsDouble(number(name, args, 0), number(name, args, 1)));
+    }
+
+    private static double number(String name, Object[] args, int index) {
+        if (args[index] instanceof Double d) return d;
+        throw new LoxError(LoxError.NO_LINE, "Argument %d of %s() should be a number".formatted(index + 1, name));
+    }
+
+    record Native(String name, int arity, Function<Object[], Object> body) implements LoxCallable {
+        @Override
+        public Object call(Object[] args) {
+            return body.apply(args);
+        }
+
+        @Override
+        public String toString() {
+            return "<native fn %s()>".formatted(name);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.interpreters.lox.runtime;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * The operations compiled programs are made of. Each takes the line of the expression it implements, for its
+ * error messages, which are the interpreter's.
+ */
+public final class Ops {
+    /**
+     * The value of a global that hasn't been defined yet.
+     */
+    public static final Object UNDEFINED = new Object();
+
+    private static final PrintWriter OUT = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), 64 * 1024));
+
+    private Ops() {
+    }
+
+    /**
+     * Runs a compiled program, reporting a runtime error the way {@code jlox} does.
+     */
+    public static void main(Runnable program) {
+        int status = 0;
+        try {
+            program.run();
+        } catch (LoxError e) {
+            OUT.flush();
+            System.err.printf("%s\n[line = %d]%n", e.getMessage(), e.getLine());
+            status = 70;
+        } finally {
+            OUT.flush();
+        }
+        if (status != 0) System.exit(status);
+    }
+
+    public static void print(Object value) {
+        OUT.println(stringify(value));
+    }
+
+    // the value of an expression statement isn't used
+    public static void discard(Object value) {
+    }
+
+    public static boolean truthy(Object value) {
+        if (value == null) return false;
+        if (value instanceof Boolean b) return b;
+        return true;
+    }
+
+    public static String stringify(Object value) {
+        if (value == null) return "nil";
+
+        if (value instanceof Double) {
+            String str = value.toString();
+            if (str.endsWith(".0")) {
+                return str.substring(0, str.length() - 2);
+            }
+            return str;
+        }
+
+        return value.toString();
+    }
+
+    public static Object global(Object value, String name, int line) {
+        if (value == UNDEFINED) {
+            throw undefined(name, line);
+        }
+        return value;
+    }
+
+    /**
+     * Checks that the global holding {@code current} is defined and returns {@code value} for it.
+     */
+    public static Object assign(Object current, Object value, String name, int line) {
+        if (current == UNDEFINED) {
+            throw undefined(name, line);
+        }
+        return value;
+    }
+
+    public static Object undefinedCall(String name, int line) {
+        throw undefined(name, line);
+    }
+
+    private static LoxError undefined(String name, int line) {
+        return new LoxError(line, String.format("Undefined variable %s", name));
+    }
+
+    public static Object add(Object left, Object right, int line) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l + r;
+        } else if (left instanceof String s1 && right instanceof String s2) {
+            return s1 + s2;
+        } else if (left instanceof String s && right instanceof Double d) {
+            return s + stringify(d);
+        }
+        throw new LoxError(line, "Operands should either be numbers or strings");
+    }
+
+    public static Object subtract(Object left, Object right, int line) {
+        return number(left, line, right) - number(right, line, left);
+    }
+
+    public static Object multiply(Object left, Object right, int line) {
+        return number(left, line, right) * number(right, line, left);
+    }
+
+    public static Object divide(Object left, Object right, int line) {
+        return number(left, line, right) / number(right, line, left);
+    }
+
+    public static boolean greater(Object left, Object right, int line) {
+        return number(left, line, right) > number(right, line, left);
+    }
+
+    public static boolean greaterEqual(Object left, Object right, int line) {
+        return number(left, line, right) >= number(right, line, left);
+    }
+
+    public static boolean less(Object left, Object right, int line) {
+        return number(left, line, right) < number(right, line, left);
+    }
+
+    public static boolean lessEqual(Object left, Object right, int line) {
+        return number(left, line, right) <= number(right, line, left);
+    }
+
+    // both operands are checked before either is used, so the error is the same whichever is wrong
+    private static double number(Object operand, int line, Object other) {
+        if (operand instanceof Double d && other instanceof Double) return d;
+        throw new LoxError(line, "Operands should be numbers");
+    }
+
+    public static boolean equal(Object left, Object right) {
+        return Objects.equals(left, right);
+    }
+
+    public static Object negate(Object operand, int line) {
+        if (operand instanceof Double d) return -d;
+        throw new LoxError(line, "Operand should be number");
+    }
+
+    public static Object call(Object callee, int line, Object... args) {
+        if (!(callee instanceof LoxCallable callable)) {
+            throw new LoxError(line, "Can only call functions and classes");
+        }
+        if (callable.arity() != args.length) {
+            throw arityError(line, args.length, callable.arity());
+        }
+
+        try {
+            return callable.call(args);
+        } catch (LoxError e) {
+            if (e.getLine() == LoxError.NO_LINE) {
+                throw new LoxError(line, e.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    static LoxError arityError(int line, int given, int required) {
+        return new LoxError(line, String.format("Wrong number of arguments: %d, required: %d", given, required));
+    }
+
+    public static Object get(Object object, String name, int line) {
+        if (object instanceof LoxObject builtIn) {
+            return builtIn.get(name, line);
+        }
+        return instance(object, line).get(name, line);
+    }
+
+    // like the interpreter, an assignment to a property evaluates to nil
+    public static Object set(LoxInstance instance, String name, Object value) {
+        instance.set(name, value);
+        return null;
+    }
+
+    public static LoxInstance instance(Object object, int line) {
+        if (!(object instanceof LoxInstance instance)) {
+            throw new LoxError(line, "Only instances have properties");
+        }
+        return instance;
+    }
+
+    /**
+     * Checks that {@code object} has a property {@code name} before the arguments of a call to it are evaluated.
+     * Arrays and maps give the property itself, which is always a function.
+     */
+    public static Object receiver(Object object, String name, int line) {
+        if (object instanceof LoxObject builtIn) {
+            return builtIn.get(name, line);
+        }
+        var instance = instance(object, line);
+        if (!instance.has(name)) {
+            throw LoxInstance.unknownProperty(name, line);
+        }
+        return instance;
+    }
+
+    /**
+     * Calls {@code receiver.name(args)}, without creating a bound method when {@code name} is a method. For arrays
+     * and maps, {@code receiver} is the function {@link #receiver} gave.
+     */
+    public static Object invoke(Object receiver, String name, int line, Object... args) {
+        if (receiver instanceof LoxInstance instance) {
+            return instance.invoke(name, args, line);
+        }
+        return call(receiver, line, args);
+    }
+
+    public static Object index(Object target, Object index, int line) {
+        return indexable(target, line).getIndex(index, line);
+    }
+
+    // like the interpreter, an assignment to an element evaluates to the value
+    public static Object setIndex(LoxIndexable target, Object index, Object value, int line) {
+        target.setIndex(index, value, line);
+        return value;
+    }
+
+    public static LoxIndexable indexable(Object target, int line) {
+        if (!(target instanceof LoxIndexable indexable)) {
+            throw new LoxError(line, "Only arrays and maps can be indexed");
+        }
+        return indexable;
+    }
+
+    public static LoxClass superclass(Object value, int line) {
+        if (!(value instanceof LoxClass klass)) {
+            throw new LoxError(line, "Must have a class as a superclass");
+        }
+        return klass;
+    }
+
+    public static LoxFunction superMethod(LoxClass superclass, String name, LoxInstance self, int line) {
+        var method = superclass.findMethod(name);
+        if (method == null) {
+            throw new LoxError(line, "Can't find super method '%s'".formatted(name));
+        }
+        return method.bind(self);
+    }
+}
@@ -0,0 +1,130 @@
+package com.interpreters.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs every {@code .jlox} fixture with the interpreter and as a program compiled by {@link Jloxc}, and checks
+ * that both print the same output and errors and exit with the same status. The runtime library of compiled
+ * programs mirrors parts of the interpreter; this is what keeps the two from drifting apart. Arrays are
+ * implemented on both sides, so their errors are also run one by one.
+ */
+class CompiledParityTest {
+    // fixtures using natives compiled programs don't have, which jloxc must keep rejecting
+    private static final Set<String> INTERPRETER_ONLY = Set.of("memo.jlox", "spawn.jlox");
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private record Run(int status, String out, String err) {
+    }
+
+    // one array error each, so every message and the line it is reported at gets compared
+    private static final List<String> ARRAY_ERRORS = List.of(
+            "array().pop();",
+            "print array().size;",
+            "var a = array(); a.push(1); print a[0.5];",
+            "var a = array(); a.push(1); print a[1];",
+            "var a = array(); a[-1] = 1;",
+            "var a = array(); a.push(1); a.push(\"one\"); a.sort();",
+            "var a = array(); a.push(nil); a.push(nil); a.sort();",
+            "var a = array(); a.push(1); a.push(2); a.sortWith(fun(x, y) { return \"less\"; });",
+            """
+            var a = array();
+            var v = 0;
+            for (var i = 0; i < 300; i = i + 1) { v = v + 37; if (v > 300) v = v - 300; a.push(v); }
+            a.sortWith(fun(x, y) { if (x < 100) return -1; return 1; });
+            """,
+            "array().map(1);",
+            "array().map(fun(x, y) { return x; });",
+            "array().filter(fun() { return true; });",
+            "array().reduce(fun(x) { return x; }, 0);",
+            "array().sortWith(fun(x) { return 0; });",
+            "var a = array(); a.push(1); a.map(fun(x) { return -\"x\"; });",
+            "var a = array(); a.push(1); a.reduce(fun(acc, x) { return acc + x; }, nil);");
+
+    @Test
+    void compiledProgramsMatchTheInterpreter() throws IOException, InterruptedException, URISyntaxException {
+        var work = Files.createTempDirectory("parity");
+        for (var fixture : fixtures()) {
+            var name = fixture.getFileName().toString();
+            var jar = work.resolve(name + ".jar");
+            var compiled = compile(work, fixture, jar);
+            if (INTERPRETER_ONLY.contains(name)) {
+                assertEquals(64, compiled.status(), name + " is now accepted by jloxc");
+                continue;
+            }
+
+            var interpreted = interpret(work, fixture);
+            if (compiled.status() != 0) {
+                // rejected by the checks both share: the diagnostics must be the same
+                assertEquals(interpreted.out(), compiled.out(), name);
+                assertTrue(interpreted.status() != 0, name + " runs in the interpreter but doesn't compile");
+                continue;
+            }
+
+            assertEquals(interpreted, run(work, "-jar", jar.toString()), name);
+        }
+    }
+
+    @Test
+    void arrayErrorsMatchTheInterpreter() throws IOException, InterruptedException {
+        var work = Files.createTempDirectory("parity");
+        for (var source : ARRAY_ERRORS) {
+            var script = work.resolve("errors.jlox");
+            Files.writeString(script, source, StandardCharsets.UTF_8);
+            var jar = work.resolve("errors.jar");
+            assertEquals(0, compile(work, script, jar).status(), source);
+
+            var interpreted = interpret(work, script);
+            assertTrue(interpreted.status() != 0, source + " doesn't fail");
+            assertEquals(interpreted, run(work, "-jar", jar.toString()), source);
+        }
+    }
+
+    private static Run compile(Path work, Path script, Path jar) throws IOException, InterruptedException {
+        return run(work, "--enable-preview", "-cp", System.getProperty("java.class.path"),
+                Jloxc.class.getName(), "-o", jar.toString(), script.toString());
+    }
+
+    private static Run interpret(Path work, Path script) throws IOException, InterruptedException {
+        return run(work, "--enable-preview", "-cp", System.getProperty("java.class.path"),
+                Lox.class.getName(), script.toString());
+    }
+
+    private static Run run(Path work, String... args) throws IOException, InterruptedException {
+        var command = new ArrayList<String>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(List.of(args));
+        var out = work.resolve("out.txt");
+        var err = work.resolve("err.txt");
+        var process = new ProcessBuilder(command)
+                .redirectOutput(out.toFile())
+                .redirectError(err.toFile())
+                .start();
+        if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new AssertionError("Timed out: " + command);
+        }
+        return new Run(process.exitValue(), Files.readString(out, StandardCharsets.UTF_8),
+                Files.readString(err, StandardCharsets.UTF_8));
+    }
+
+    private static List<Path> fixtures() throws IOException, URISyntaxException {
+        var directory = Path.of(CompiledParityTest.class.getResource("/fibonacci.jlox").toURI()).getParent();
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files.filter(f -> f.toString().endsWith(".jlox")).sorted().toList());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.interpreters.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Applies random edits to the {@code .jlox} fixtures through {@link IncrementalParser} and checks every result
+ * against a full parse of the edited source, including the half-typed sources with syntax errors that editors see.
+ */
+class IncrementalParserTest {
+    private static final int EDITS_PER_FIXTURE = 400;
+    private static final String[] SNIPPETS = {
+            "(", ")", ";", "{", "}", "[", "]", ",", ".", "//", "\"", "\n", " ", "3",
+            "fun ", "var ", "class A {", "print ", "return ", "while ", "for (;;) ", "if (x) ", "break;", "x = 1;"
+    };
+
+    private final PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+
+    @Test
+    void editsMatchFullParse() throws IOException, URISyntaxException {
+        for (var fixture : fixtures()) {
+            for (long seed = 1; seed <= 3; seed++) {
+                check(fixture, Files.readString(fixture), new Random(seed));
+            }
+        }
+    }
+
+    // recovering from the error, the parser resumes inside the block, past the last kept statement's start
+    @Test
+    void errorRecoveryPastTheLastKeptStatement() {
+        var parser = new IncrementalParser("a;\n{ b; c; }\n", new ErrorReporter(discard, discard));
+
+        assertEquals(fullParse("a(\n{ b; c; }\n"), String.valueOf(parser.edit(1, 1, "(")));
+    }
+
+    // edits pile up, so most sources have errors; now and then the fixture is restored to get valid ones too
+    private void check(Path fixture, String original, Random random) {
+        var source = original;
+        var parser = new IncrementalParser(source, new ErrorReporter(discard, discard));
+
+        for (int i = 0; i < EDITS_PER_FIXTURE; i++) {
+            int offset;
+            int removed;
+            String inserted;
+            if (random.nextInt(20) == 0) {
+                offset = 0;
+                removed = source.length();
+                inserted = original;
+            } else {
+                offset = random.nextInt(source.length() + 1);
+                removed = random.nextInt(4) == 0 ? Math.min(random.nextInt(8), source.length() - offset) : 0;
+                inserted = random.nextBoolean() ? SNIPPETS[random.nextInt(SNIPPETS.length)] : excerpt(source, random);
+            }
+
+            var edited = source.substring(0, offset) + inserted + source.substring(offset + removed);
+            var statements = parser.edit(offset, removed, inserted);
+            assertEquals(fullParse(edited), String.valueOf(statements),
+                    "%s: edit %d+%d \"%s\" of:%n%s".formatted(fixture.getFileName(), offset, removed, inserted, source));
+            source = edited;
+        }
+    }
+
+    private static String excerpt(String source, Random random) {
+        int start = random.nextInt(source.length() + 1);
+        return source.substring(start, Math.min(source.length(), start + random.nextInt(12)));
+    }
+
+    // statements print their tokens' type, lexeme, value and line, so equal strings mean equal trees
+    private String fullParse(String source) {
+        var reporter = new ErrorReporter(discard, discard);
+        return String.valueOf(new Parser(new Scanner(source, reporter).scan(), reporter).parse());
+    }
+
+    private static List<Path> fixtures() throws IOException, URISyntaxException {
+        var directory = Path.of(IncrementalParserTest.class.getResource("/fibonacci.jlox").toURI()).getParent();
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files.filter(f -> f.toString().endsWith(".jlox")).sorted().toList());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.interpreters.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs a program of tens of thousands of top-level statements on every engine. Engines that keep state per
+ * statement must do so in constant time: a quadratic one takes over a minute here, a linear one about a second.
+ */
+class LargeProgramTest {
+    private static final int STATEMENTS = 40_000;
+    private static final Duration LIMIT = Duration.ofSeconds(15);
+    private static final Map<String, Engine> ENGINES = Map.of(
+            "tree-walking", Engine.TREE_WALKING,
+            "switch", Engine.SWITCH,
+            "flat", Engine.FLAT,
+            "closure", Engine.CLOSURE,
+            "stackless", Engine.STACKLESS);
+
+    @Test
+    void largeProgramsRunInLinearTime() {
+        var source = new StringBuilder("var total = 0;\n");
+        for (int i = 0; i < STATEMENTS; i++) {
+            source.append("var v").append(i).append(" = ").append(i).append(";\n");
+            source.append("total = total + v").append(i).append(";\n");
+        }
+        source.append("print total;\n");
+        var expected = Interpreter.stringify((double) STATEMENTS * (STATEMENTS - 1) / 2);
+
+        for (var engine : ENGINES.entrySet()) {
+            var buffer = new ByteArrayOutputStream();
+            var out = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+            var runtime = new LoxRuntime(out, out, engine.getValue());
+
+            long start = System.nanoTime();
+            runtime.run(source.toString());
+            runtime.flush();
+            var elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+            assertEquals(expected, buffer.toString(StandardCharsets.UTF_8).strip(), engine.getKey());
+            assertTrue(elapsed.compareTo(LIMIT) < 0, "%s took %d ms".formatted(engine.getKey(), elapsed.toMillis()));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.interpreters.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs one compiled {@link Program} in several runtimes at once, as batch mode does: every runtime has globals of
+ * its own, so nothing a run caches may be kept in the program.
+ */
+class SharedProgramTest {
+    private static final int RUNTIMES = 8;
+    private static final String SOURCE = """
+            var total = 0;
+            var step = 1;
+            fun add(n) { total = total + n * step; }
+            for (var i = 0; i < 20000; i = i + 1) {
+                add(i);
+                step = step + 0;
+            }
+            print total;
+            """;
+    private static final Map<String, Engine> ENGINES = Map.of(
+            "tree-walking", Engine.TREE_WALKING,
+            "switch", Engine.SWITCH,
+            "flat", Engine.FLAT,
+            "closure", Engine.CLOSURE,
+            "stackless", Engine.STACKLESS);
+
+    @Test
+    void concurrentRuntimesKeepTheirOwnGlobals() throws InterruptedException, ExecutionException {
+        var discard = new PrintStream(OutputStream.nullOutputStream());
+        var program = LoxRuntime.compile(SOURCE, new ErrorReporter(discard, discard));
+        var expected = Interpreter.stringify(20000.0 * 19999 / 2);
+
+        try (var executor = Executors.newFixedThreadPool(RUNTIMES)) {
+            for (var engine : ENGINES.entrySet()) {
+                var runs = new ArrayList<Future<String>>();
+                for (int i = 0; i < RUNTIMES; i++) {
+                    runs.add(executor.submit(() -> {
+                        var buffer = new ByteArrayOutputStream();
+                        var out = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+                        var runtime = new LoxRuntime(out, out, engine.getValue());
+                        runtime.run(program);
+                        runtime.flush();
+                        return buffer.toString(StandardCharsets.UTF_8).strip();
+                    }));
+                }
+                for (var run : runs) {
+                    assertEquals(expected, run.get(), engine.getKey());
+                }
+            }
+        }
+    }
+}
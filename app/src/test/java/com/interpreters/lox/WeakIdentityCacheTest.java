@@ -0,0 +1,69 @@
+package com.interpreters.lox;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeakIdentityCacheTest {
+
+    @Test
+    void looksKeysUpByIdentity() {
+        var cache = new WeakIdentityCache<List<Integer>, String>();
+        var key = List.of(1, 2);
+        cache.put(key, "first");
+
+        assertEquals("first", cache.get(key));
+        assertEquals(null, cache.get(List.of(1, 2)));
+
+        cache.put(key, "second");
+        assertEquals("second", cache.get(key));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void dropsEntriesOfCollectedKeys() throws InterruptedException {
+        var cache = new WeakIdentityCache<Object, Integer>();
+        var kept = new ArrayList<Object>();
+        for (int i = 0; i < 1000; i++) {
+            var key = new Object();
+            cache.put(key, i);
+            if (i % 10 == 0) kept.add(key);
+        }
+
+        for (int attempt = 0; attempt < 20 && cache.size() > kept.size(); attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertEquals(kept.size(), cache.size());
+        for (int i = 0; i < kept.size(); i++) {
+            assertEquals(i * 10, cache.get(kept.get(i)));
+        }
+    }
+
+    // a REPL redefining a function keeps only the bodies that are still reachable
+    @Test
+    void closureEngineForgetsRedefinedFunctions() throws InterruptedException {
+        var created = new ClosureInterpreter[1];
+        var discard = new PrintStream(OutputStream.nullOutputStream());
+        var runtime = new LoxRuntime(discard, discard, (out, reporter) -> created[0] = new ClosureInterpreter(out, reporter));
+        for (int i = 0; i < 200; i++) {
+            runtime.runRepl("fun f() { return " + i + "; } f();");
+        }
+        var interpreter = created[0];
+
+        int cached = Integer.MAX_VALUE;
+        for (int attempt = 0; attempt < 20 && cached > 2; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+            cached = interpreter.cachedBodies();
+        }
+        assertTrue(cached <= 2, "%d bodies still cached".formatted(cached));
+    }
+}